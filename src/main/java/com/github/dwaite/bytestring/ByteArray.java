@@ -1,5 +1,6 @@
 package com.github.dwaite.bytestring;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Objects;
@@ -7,10 +8,17 @@ import java.util.Objects;
 /**
  * Simple mutable byte sequence wrapping a byte array.The array contains two interesting properties
  * - It does not copy the data on initial creation
- * - It *does* copy the data when creating a subsequence. 
+ * - It does not copy the data when creating a subsequence either. A subsequence is a view over the same
+ *   array, with indexes relative to the view, and writes through either are visible in both.
  */
 public class ByteArray implements MutableByteSequence {
-	private byte[] data;
+	private final byte[] data;
+	private final int offset;
+	private final int length;
+	// instance created through a public constructor, which holds the frozen state shared by its views
+	private final ByteArray root;
+	// set once ownership of the data has been handed to an immutable sequence
+	private boolean frozen;
 	
 	/**
 	 * Create a new ByteArray object from the given byte[]
@@ -19,38 +27,204 @@ public class ByteArray implements MutableByteSequence {
 	public ByteArray(byte[] data) {
 		Objects.requireNonNull(data);
 		this.data = data;
+		this.offset = 0;
+		this.length = data.length;
+		this.root = this;
+	}
+
+	/**
+	 * Create a new ByteArray object as a view over a range of the given byte[]
+	 * @param data backing byte array data
+	 * @param offset offset of the view within the array
+	 * @param length length of the view
+	 */
+	public ByteArray(byte[] data, int offset, int length) {
+		Objects.requireNonNull(data);
+		if (offset < 0 || length < 0 || offset > data.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		this.data = data;
+		this.offset = offset;
+		this.length = length;
+		this.root = this;
+	}
+
+	private ByteArray(ByteArray root, int offset, int length) {
+		this.data = root.data;
+		this.offset = offset;
+		this.length = length;
+		this.root = root;
 	}
 
 	public byte get(int index) {
-		return data[index];
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index");
+		}
+		return data[offset + index];
 	}
 
-	public ByteSequence subSequence(int start, int end) {
-		return new ByteArray(Arrays.copyOfRange(data, start, end));
+	/**
+	 * Return a view over a range of this sequence, sharing its storage.
+	 * 
+	 * @param start starting index, in the range [0, {@link #length()}]
+	 * @param end ending index, in the range [`start`, {@link #length()}]
+	 * @return mutable view of the range
+	 */
+	public ByteArray subSequence(int start, int end) {
+		if (start < 0 || start > length) {
+			throw new IndexOutOfBoundsException("start");
+		}
+		if (end < start || end > length) {
+			throw new IndexOutOfBoundsException("end");
+		}
+		return new ByteArray(root, offset + start, end - start);
 	}
 
 	public Bytes toBytes() {
-		return new Bytes(data);
+		if (length == 0) {
+			return Bytes.empty();
+		}
+		BytesMetrics.record(BytesMetrics.Operation.TO_BYTES, length);
+		return new Bytes(Arrays.copyOfRange(data, offset, offset + length), true);
 	}
 
 	public int length() {
-		return data.length;
+		return length;
 	}
 
 	public String asString(Charset charset) {
-		return new String(data, charset);
+		return new String(data, offset, length, charset);
 	}
-	
+
+	@Override
+	public ByteBuffer getByteBuffer() {
+		return ByteBuffer.wrap(data, offset, length).slice().asReadOnlyBuffer();
+	}
+
+	@Override
+	public void getBytes(int index, byte[] destination, int destinationOffset, int length) {
+		ByteSequences.checkGetBytes(this, index, destination, destinationOffset, length);
+		System.arraycopy(data, offset + index, destination, destinationOffset, length);
+	}
+
+	@Override
+	public void copyTo(ByteBuffer destination) {
+		destination.put(data, offset, this.length);
+	}
+
 	public ByteArray put(int index,
             byte value) {
     	if (index < 0 || length() < index + 1) {
     		throw new IndexOutOfBoundsException("index");
     	}
+    	checkNotFrozen();
 
-		data[index] = value;
+		data[offset + index] = value;
 		return this;
 	}
 
+	@Override
+	public ByteArray put(int index, ByteSequence source, int sourceIndex, int length) {
+		if (index < 0 || length < 0 || index > this.length - length) {
+			throw new IndexOutOfBoundsException("index");
+		}
+		if (sourceIndex < 0 || sourceIndex > source.length() - length) {
+			throw new IndexOutOfBoundsException("sourceIndex");
+		}
+		checkNotFrozen();
+		byte[] sourceArray = ByteSequences.readableArrayOf(source);
+		if (sourceArray != null) {
+			// arraycopy allows for the source sharing this array
+			System.arraycopy(sourceArray, ByteSequences.readableArrayOffsetOf(source) + sourceIndex, data,
+					offset + index, length);
+		}
+		else {
+			ByteBuffer buffer = source.getByteBuffer();
+			buffer.position(sourceIndex);
+			buffer.get(data, offset + index, length);
+		}
+		return this;
+	}
+
+	@Override
+	public ByteArray fill(int from, int to, byte value) {
+		if (from < 0 || from > to || to > length) {
+			throw new IndexOutOfBoundsException("from");
+		}
+		checkNotFrozen();
+		Arrays.fill(data, offset + from, offset + to, value);
+		return this;
+	}
+
+	@Override
+	public ByteArray copyWithin(int sourceIndex, int destinationIndex, int length) {
+		if (sourceIndex < 0 || length < 0 || sourceIndex > this.length - length) {
+			throw new IndexOutOfBoundsException("sourceIndex");
+		}
+		if (destinationIndex < 0 || destinationIndex > this.length - length) {
+			throw new IndexOutOfBoundsException("destinationIndex");
+		}
+		checkNotFrozen();
+		System.arraycopy(data, offset + sourceIndex, data, offset + destinationIndex, length);
+		return this;
+	}
+
+	/**
+	 * Hand the backing array over to an immutable sequence without copying. This instance becomes read-only,
+	 * with any further writes throwing {@link IllegalStateException}. Freezing applies to the whole array, so
+	 * this instance and every view sharing its array are frozen together.
+	 * 
+	 * This is intended for building a value in place and then publishing it. The caller must not retain any
+	 * other reference to the array, such as the one this instance was created with.
+	 * 
+	 * @return immutable sequence sharing the backing array
+	 * @throws IllegalStateException if this instance has already been frozen
+	 */
+	public BytesSubsequence freeze() {
+		checkNotFrozen();
+		root.frozen = true;
+		return new BytesSubsequence(data, offset, length, true);
+	}
+
+	/**
+	 * Hand the content over to a {@link Bytes} instance, as per {@link #freeze()}. The backing array is
+	 * adopted without copying when this sequence covers all of it, and otherwise the range is copied. This
+	 * instance becomes read-only, with any further writes throwing {@link IllegalStateException}.
+	 * 
+	 * @return Bytes instance holding the content of this sequence
+	 * @throws IllegalStateException if this instance has already been frozen
+	 * @see #freeze()
+	 */
+	public Bytes toBytesAndRelease() {
+		return freeze().toBytes();
+	}
+
+	/**
+	 * @return `true` if the backing array has been handed to an immutable sequence
+	 */
+	public boolean isFrozen() {
+		return root.frozen;
+	}
+
+	private void checkNotFrozen() {
+		if (root.frozen) {
+			throw new IllegalStateException("frozen");
+		}
+	}
+
+	@Override
+	public long retainedSize() {
+		return data.length;
+	}
+
+	byte[] backingArray() {
+		return data;
+	}
+
+	int backingOffset() {
+		return offset;
+	}
+
 	
 	@Override
 	public boolean equals(Object other) {
@@ -60,17 +234,7 @@ public class ByteArray implements MutableByteSequence {
 		if (other == null || !(other instanceof ByteSequence)) {
 			return false;
 		}
-		ByteSequence o =  (ByteSequence) other;
-		if (o.length() != length()) {
-			return false;
-		}
-		int length = length();
-		for (int i = 0; i < length; i++) {
-			if (get(i) != o.get(i)) {
-				return false;
-			}
-		}
-		return true;
+		return ByteSequences.contentEquals(this, (ByteSequence) other);
 	}
 
 	@Override
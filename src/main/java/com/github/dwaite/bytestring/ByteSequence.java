@@ -1,10 +1,13 @@
 package com.github.dwaite.bytestring;
 
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
 import java.util.Objects;
 import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
+import java.util.zip.Checksum;
 
 import com.github.dwaite.bytestring.impl.ImmutableBytesSpliterator;
 
@@ -68,6 +71,75 @@ public interface ByteSequence extends Comparable<ByteSequence> {
 	 */
 	Bytes toBytes();
 
+	/**
+	 * Return a read-only {@link ByteBuffer} over the content of this sequence, with a position of zero and a
+	 * limit of {@link #length()}. Implementations should return a view of their existing storage rather
+	 * than a copy, so that the buffer can be handed to NIO and {@link java.util.zip} APIs cheaply.
+	 * 
+	 * @return read-only buffer over this sequence
+	 */
+	default ByteBuffer getByteBuffer() {
+		return toBytes().getByteBuffer();
+	}
+
+	/**
+	 * Copy a range of this sequence into an array. Implementations copy directly from their backing array
+	 * or buffer, so generic code can read a sequence in bulk rather than through {@link #get(int)}.
+	 * 
+	 * @param index index of the first byte to copy
+	 * @param destination array to copy into
+	 * @param destinationOffset offset within `destination` to copy to
+	 * @param length number of bytes to copy
+	 * @throws IndexOutOfBoundsException if either range is not within its sequence or array
+	 */
+	default void getBytes(int index, byte[] destination, int destinationOffset, int length) {
+		ByteSequences.checkGetBytes(this, index, destination, destinationOffset, length);
+		for (int i = 0; i < length; i++) {
+			destination[destinationOffset + i] = get(index + i);
+		}
+	}
+
+	/**
+	 * Copy the content of this sequence into a buffer at its current position, advancing the position by
+	 * {@link #length()}.
+	 * 
+	 * @param destination buffer to copy into
+	 * @throws java.nio.BufferOverflowException if the buffer has fewer than {@link #length()} bytes remaining
+	 * @throws java.nio.ReadOnlyBufferException if the buffer is read-only
+	 */
+	default void copyTo(ByteBuffer destination) {
+		destination.put(getByteBuffer());
+	}
+
+	/**
+	 * Update a checksum such as {@link java.util.zip.CRC32} with the content of this sequence. The content
+	 * is read from the backing array or buffer of the sequence without being copied where possible.
+	 * 
+	 * @param checksum checksum to update
+	 * @return the value of the checksum after the update
+	 */
+	default long checksum(Checksum checksum) {
+		Objects.requireNonNull(checksum);
+		ByteSequences.updateChecksum(checksum, this);
+		return checksum.getValue();
+	}
+
+	/**
+	 * Compute a message digest over the content of this sequence. The content is read from the backing
+	 * array or buffer of the sequence without being copied where possible.
+	 * 
+	 * Any data previously passed to the digest is included, and the digest is reset afterward as per
+	 * {@link MessageDigest#digest()}.
+	 * 
+	 * @param digest message digest to update and complete
+	 * @return the resulting digest value
+	 */
+	default Bytes digest(MessageDigest digest) {
+		Objects.requireNonNull(digest);
+		ByteSequences.updateDigest(digest, this);
+		return new Bytes(digest.digest(), true);
+	}
+
 	/**
 	 * Return the length of this byte instance
 	 * 
@@ -88,27 +160,7 @@ public interface ByteSequence extends Comparable<ByteSequence> {
 	 * @throws IndexOutOfBoundsException `fromIndex` is outside the valid range.
 	 */
 	default int indexOf(ByteSequence s, int fromIndex) throws IndexOutOfBoundsException {
-		Objects.requireNonNull(s);
-		if (s.length() == 0) {
-			return 0;
-		}
-		byte initial = s.get(0);
-		int end = length() - s.length();
-		for (int i = fromIndex; i < end; i++) {
-			if (get(i) == initial) {
-				boolean found = true;
-				for (int j = 1; i < s.length(); j++) {
-					if (get(i+j) != s.get(j)) {
-						found = false;
-						break;
-					}
-				}
-				if (found) {
-					return i;
-				}
-			}
-		}
-		return NOT_FOUND;
+		return ByteSequences.indexOf(this, s, fromIndex);
 	}
 
 	/**
@@ -175,6 +227,27 @@ public interface ByteSequence extends Comparable<ByteSequence> {
 	default boolean isEmpty() {
 		return length() == 0;
 	}
+
+	/**
+	 * Return the size of the storage this sequence keeps reachable. For a view, such as a
+	 * {@link BytesSubsequence} from {@link Bytes#subSequence(int, int)}, this is the size of the whole
+	 * backing array, however small the view.
+	 * 
+	 * @return size in bytes of the backing array or buffer, or {@link #length()} for sequences without one
+	 */
+	default long retainedSize() {
+		return length();
+	}
+
+	/**
+	 * Test whether this sequence uses less than the fraction of its retained storage given by
+	 * {@link ByteSequences#getCompactionThreshold()}, so that holding on to it long-term would waste memory.
+	 * 
+	 * @return `true` if the sequence pins substantially more storage than its own length
+	 */
+	default boolean isPinningExcess() {
+		return length() < retainedSize() * ByteSequences.getCompactionThreshold();
+	}
 		
 	/**
 	 * Retrieve a java `char` primitive as a two byte sequence starting at the given index. The bytes are 
@@ -334,14 +407,7 @@ public interface ByteSequence extends Comparable<ByteSequence> {
 	 * If the available bytes are the same, the shorter length sorts first.
 	 */
 	default int compareTo(ByteSequence o) {
-		int shortestLength = Math.min(length(), o.length());
-		for (int i = 0; i<shortestLength; i++) {
-			int comparison = getUnsignedByte(i) - o.getUnsignedByte(i);
-			if (comparison != 0) {
-				return comparison;
-			}
-		}
-		return length() - o.length();
+		return ByteSequences.compare(this, o);
 	}
 
 	/** Equals implementation. Implementations of ByteSequence must implement equality across all implementations
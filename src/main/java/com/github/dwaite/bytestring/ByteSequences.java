@@ -0,0 +1,887 @@
+package com.github.dwaite.bytestring;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.zip.Checksum;
+
+import com.github.dwaite.bytestring.impl.ChecksumSupport;
+
+/**
+ * Static utility operations over {@link ByteSequence} instances, in the same spirit as
+ * {@link java.util.Arrays} and {@link java.util.Collections}.
+ */
+public final class ByteSequences {
+	private static final int RADIX = 256;
+	private static final int INSERTION_SORT_THRESHOLD = 32;
+	private static final int PARALLEL_SORT_THRESHOLD = 1 << 14;
+	// bytes read at a time when comparing or searching sequences without a backing array
+	private static final int COMPARE_CHUNK = 512;
+	// initial array size when reading content of a length taken from an untrusted source
+	private static final int BOUNDED_READ_CHUNK = 8192;
+
+	private static final double DEFAULT_COMPACTION_THRESHOLD = 0.25;
+	private static final double COMPACTION_THRESHOLD = compactionThreshold(
+			System.getProperty("com.github.dwaite.bytestring.compactionThreshold"));
+
+	private ByteSequences() {
+	}
+
+	/**
+	 * @return fraction of its backing storage which a view must use to not be considered to pin excess
+	 *         storage. This is read once from the system property
+	 *         `com.github.dwaite.bytestring.compactionThreshold`, and is 0.25 if the property is unset or not
+	 *         a number in the range [0, 1].
+	 * @see ByteSequence#isPinningExcess()
+	 * @see BytesSubsequence#compact()
+	 */
+	public static double getCompactionThreshold() {
+		return COMPACTION_THRESHOLD;
+	}
+
+	private static double compactionThreshold(String property) {
+		if (property == null) {
+			return DEFAULT_COMPACTION_THRESHOLD;
+		}
+		try {
+			double fraction = Double.parseDouble(property);
+			return fraction >= 0 && fraction <= 1 ? fraction : DEFAULT_COMPACTION_THRESHOLD;
+		}
+		catch (NumberFormatException e) {
+			return DEFAULT_COMPACTION_THRESHOLD;
+		}
+	}
+
+	/**
+	 * Create an immutable copy of a range of an array. Values of up to {@value InlineBytes#MAX_LENGTH} bytes
+	 * are held inline as {@link InlineBytes} without a backing array, while longer values are returned as
+	 * {@link Bytes}.
+	 *
+	 * @param input array to copy from
+	 * @param offset offset of the range within the array
+	 * @param length length of the range
+	 * @return immutable copy of the range
+	 */
+	public static ByteSequence copyOf(byte[] input, int offset, int length) {
+		Objects.requireNonNull(input);
+		if (offset < 0 || length < 0 || offset > input.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (length <= InlineBytes.MAX_LENGTH) {
+			return InlineBytes.of(input, offset, length);
+		}
+		return new Bytes(Arrays.copyOfRange(input, offset, offset + length), true);
+	}
+
+	/**
+	 * Create an immutable copy of a sequence, choosing the representation as per
+	 * {@link #copyOf(byte[], int, int)}. Sequences which are already immutable are returned as is.
+	 *
+	 * @param sequence sequence to copy
+	 * @return immutable copy of the sequence
+	 */
+	public static ByteSequence copyOf(ByteSequence sequence) {
+		return copyOf(sequence, false);
+	}
+
+	/**
+	 * Create an immutable copy of a sequence, as per {@link #copyOf(ByteSequence)}, optionally compacting
+	 * views which pin excess storage. Compacting suits copies which are to be held long-term.
+	 *
+	 * @param sequence sequence to copy
+	 * @param compact `true` to return views as per {@link BytesSubsequence#compact()} rather than as is
+	 * @return immutable copy of the sequence
+	 */
+	public static ByteSequence copyOf(ByteSequence sequence, boolean compact) {
+		Objects.requireNonNull(sequence);
+		if (compact && sequence instanceof BytesSubsequence) {
+			return ((BytesSubsequence) sequence).compact();
+		}
+		if (sequence instanceof InlineBytes || sequence instanceof Bytes || sequence instanceof BytesSubsequence) {
+			return sequence;
+		}
+		if (sequence.length() <= InlineBytes.MAX_LENGTH) {
+			return InlineBytes.of(sequence);
+		}
+		return sequence.toBytes();
+	}
+
+	/**
+	 * Encode characters as UTF-8, choosing the representation of the result as per
+	 * {@link #copyOf(byte[], int, int)}.
+	 *
+	 * @param input characters to encode
+	 * @return immutable sequence holding the encoded bytes
+	 */
+	public static ByteSequence ofUTF8(CharSequence input) {
+		int length = utf8Length(input);
+		if (length > InlineBytes.MAX_LENGTH) {
+			return Bytes.ofUTF8(input);
+		}
+		byte[] encoded = new byte[length];
+		encodeUtf8(input, encoded, 0);
+		return InlineBytes.of(encoded, 0, length);
+	}
+
+	/**
+	 * Compute the number of bytes needed to encode the given characters as UTF-8. Unpaired surrogates are
+	 * counted as a single replacement byte, matching the behavior of {@link String#getBytes(java.nio.charset.Charset)}.
+	 *
+	 * @param input characters to measure
+	 * @return encoded length in bytes
+	 * @throws IllegalArgumentException if the encoded length would exceed {@link Integer#MAX_VALUE}
+	 */
+	public static int utf8Length(CharSequence input) {
+		Objects.requireNonNull(input);
+		int length = input.length();
+		long encoded = length;
+		int i = 0;
+		while (i < length && input.charAt(i) < 0x80) {
+			i++;
+		}
+		for (; i < length; i++) {
+			char c = input.charAt(i);
+			if (c < 0x80) {
+				continue;
+			}
+			if (c < 0x800) {
+				encoded += 1;
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(input.charAt(i + 1))) {
+				// four bytes for the two chars of the pair
+				encoded += 2;
+				i++;
+			}
+			else if (Character.isSurrogate(c)) {
+				// unpaired surrogate, encoded as a single '?'
+			}
+			else {
+				encoded += 2;
+			}
+		}
+		if (encoded > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("input too long");
+		}
+		return (int) encoded;
+	}
+
+	/**
+	 * Encode the given characters as UTF-8 directly into a mutable sequence, without an intermediate array.
+	 * Unpaired surrogates are encoded as `'?'`, matching the behavior of
+	 * {@link String#getBytes(java.nio.charset.Charset)}.
+	 *
+	 * @param input characters to encode
+	 * @param destination sequence to write the encoded bytes into
+	 * @param offset index within `destination` to start writing at
+	 * @return number of bytes written, equal to {@link #utf8Length(CharSequence)}
+	 * @throws IndexOutOfBoundsException if `destination` does not have room for the encoded bytes after
+	 * `offset`. In this case the destination is not modified.
+	 */
+	public static int encodeUtf8(CharSequence input, MutableByteSequence destination, int offset)
+			throws IndexOutOfBoundsException {
+		Objects.requireNonNull(destination);
+		int encodedLength = utf8Length(input);
+		if (offset < 0 || offset > destination.length() - encodedLength) {
+			throw new IndexOutOfBoundsException("offset");
+		}
+		byte[] array = writableArrayOf(destination);
+		if (array != null) {
+			encodeUtf8(input, array, writableArrayOffsetOf(destination) + offset);
+			return encodedLength;
+		}
+		int length = input.length();
+		int index = offset;
+		int i = 0;
+		for (; i < length; i++) {
+			char c = input.charAt(i);
+			if (c >= 0x80) {
+				break;
+			}
+			destination.put(index++, (byte) c);
+		}
+		for (; i < length; i++) {
+			char c = input.charAt(i);
+			if (c < 0x80) {
+				destination.put(index++, (byte) c);
+			}
+			else if (c < 0x800) {
+				destination.put(index++, (byte) (0xc0 | (c >> 6)));
+				destination.put(index++, (byte) (0x80 | (c & 0x3f)));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(input.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, input.charAt(++i));
+				destination.put(index++, (byte) (0xf0 | (codePoint >> 18)));
+				destination.put(index++, (byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+				destination.put(index++, (byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+				destination.put(index++, (byte) (0x80 | (codePoint & 0x3f)));
+			}
+			else if (Character.isSurrogate(c)) {
+				destination.put(index++, (byte) '?');
+			}
+			else {
+				destination.put(index++, (byte) (0xe0 | (c >> 12)));
+				destination.put(index++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+				destination.put(index++, (byte) (0x80 | (c & 0x3f)));
+			}
+		}
+		return index - offset;
+	}
+
+	/**
+	 * Sort an array of sequences into the order defined by {@link ByteSequence#compareTo(ByteSequence)},
+	 * that is unsigned lexicographic order with shorter sequences sorting before longer sequences sharing
+	 * the same prefix.
+	 * 
+	 * This uses a most-significant-digit radix sort, which examines each byte of the distinguishing prefixes
+	 * once rather than comparing sequences pairwise. The sort is stable.
+	 * 
+	 * @param sequences sequences to sort
+	 */
+	public static void sort(ByteSequence[] sequences) {
+		sort(sequences, false);
+	}
+
+	/**
+	 * Sort an array of sequences into the order defined by {@link ByteSequence#compareTo(ByteSequence)},
+	 * optionally sorting the buckets for each distinct leading byte in parallel.
+	 * 
+	 * @param sequences sequences to sort
+	 * @param parallel `true` to sort large inputs using the common fork/join pool
+	 * @see #sort(ByteSequence[])
+	 */
+	public static void sort(ByteSequence[] sequences, boolean parallel) {
+		Objects.requireNonNull(sequences);
+		int length = sequences.length;
+		if (length < 2) {
+			return;
+		}
+		if (length <= INSERTION_SORT_THRESHOLD) {
+			insertionSort(sequences, 0, length, 0);
+			return;
+		}
+		ByteSequence[] aux = new ByteSequence[length];
+		int[] digits = new int[length];
+		if (!parallel || length < PARALLEL_SORT_THRESHOLD) {
+			radixSort(sequences, aux, digits, 0, length, 0);
+			return;
+		}
+		int[] bucketStarts = distribute(sequences, aux, digits, 0, length, 0);
+		IntStream.range(0, RADIX).parallel().forEach(bucket -> {
+			int from = bucketStarts[bucket];
+			int to = bucketStarts[bucket + 1];
+			if (to - from > 1) {
+				radixSort(sequences, aux, digits, from, to, 1);
+			}
+		});
+	}
+
+	/**
+	 * Sort a list of sequences into the order defined by {@link ByteSequence#compareTo(ByteSequence)}.
+	 * 
+	 * @param sequences list to sort, which must support {@link ListIterator#set(Object)}
+	 * @param <T> type of sequence within the list
+	 * @see #sort(ByteSequence[])
+	 */
+	public static <T extends ByteSequence> void sort(List<T> sequences) {
+		sort(sequences, false);
+	}
+
+	/**
+	 * Sort a list of sequences into the order defined by {@link ByteSequence#compareTo(ByteSequence)},
+	 * optionally sorting the buckets for each distinct leading byte in parallel.
+	 * 
+	 * @param sequences list to sort, which must support {@link ListIterator#set(Object)}
+	 * @param parallel `true` to sort large inputs using the common fork/join pool
+	 * @param <T> type of sequence within the list
+	 * @see #sort(ByteSequence[])
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends ByteSequence> void sort(List<T> sequences, boolean parallel) {
+		ByteSequence[] array = sequences.toArray(new ByteSequence[sequences.size()]);
+		sort(array, parallel);
+		ListIterator<T> iterator = sequences.listIterator();
+		for (ByteSequence sequence : array) {
+			iterator.next();
+			iterator.set((T) sequence);
+		}
+	}
+
+	/**
+	 * Compute the bitwise exclusive or of two sequences of equal length into a destination, eight bytes at
+	 * a time. The destination may be one of the operands.
+	 * 
+	 * Words are accessed through byte buffers over the backing storage. For direct buffers, and for heap
+	 * storage on Java 9 and later, each is a single memory access; heap buffers on Java 8 assemble each
+	 * word from single bytes, so heap storage gains little there over a byte loop.
+	 * 
+	 * @param a first operand
+	 * @param b second operand
+	 * @param destination sequence to write the result to, starting at index zero
+	 * @return `destination`
+	 * @throws IllegalArgumentException if the operands differ in length, or the destination is shorter
+	 */
+	public static MutableByteSequence xor(ByteSequence a, ByteSequence b, MutableByteSequence destination) {
+		return bitwise(BitOperation.XOR, a, b, destination);
+	}
+
+	/**
+	 * Compute the bitwise and of two sequences of equal length into a destination.
+	 * 
+	 * @param a first operand
+	 * @param b second operand
+	 * @param destination sequence to write the result to, starting at index zero
+	 * @return `destination`
+	 * @throws IllegalArgumentException if the operands differ in length, or the destination is shorter
+	 * @see #xor(ByteSequence, ByteSequence, MutableByteSequence)
+	 */
+	public static MutableByteSequence and(ByteSequence a, ByteSequence b, MutableByteSequence destination) {
+		return bitwise(BitOperation.AND, a, b, destination);
+	}
+
+	/**
+	 * Compute the bitwise or of two sequences of equal length into a destination.
+	 * 
+	 * @param a first operand
+	 * @param b second operand
+	 * @param destination sequence to write the result to, starting at index zero
+	 * @return `destination`
+	 * @throws IllegalArgumentException if the operands differ in length, or the destination is shorter
+	 * @see #xor(ByteSequence, ByteSequence, MutableByteSequence)
+	 */
+	public static MutableByteSequence or(ByteSequence a, ByteSequence b, MutableByteSequence destination) {
+		return bitwise(BitOperation.OR, a, b, destination);
+	}
+
+	/**
+	 * Clear the bits of `a` which are set in `b`, writing the result into a destination.
+	 * 
+	 * @param a first operand
+	 * @param b mask of bits to clear
+	 * @param destination sequence to write the result to, starting at index zero
+	 * @return `destination`
+	 * @throws IllegalArgumentException if the operands differ in length, or the destination is shorter
+	 * @see #xor(ByteSequence, ByteSequence, MutableByteSequence)
+	 */
+	public static MutableByteSequence andNot(ByteSequence a, ByteSequence b, MutableByteSequence destination) {
+		return bitwise(BitOperation.AND_NOT, a, b, destination);
+	}
+
+	/**
+	 * Compute the bitwise complement of a sequence into a destination, which may be the sequence itself.
+	 * 
+	 * @param a operand
+	 * @param destination sequence to write the result to, starting at index zero
+	 * @return `destination`
+	 * @throws IllegalArgumentException if the destination is shorter than the operand
+	 */
+	public static MutableByteSequence not(ByteSequence a, MutableByteSequence destination) {
+		return bitwise(BitOperation.NOT, a, a, destination);
+	}
+
+	/**
+	 * Count the set bits of a sequence, eight bytes at a time, with word access as described for
+	 * {@link #xor(ByteSequence, ByteSequence, MutableByteSequence)}.
+	 * 
+	 * @param sequence sequence to count
+	 * @return number of bits set
+	 */
+	public static long popCount(ByteSequence sequence) {
+		ByteBuffer buffer = readableBufferOf(sequence);
+		int length = sequence.length();
+		int words = length & -Long.BYTES;
+		long count = 0;
+		for (int i = 0; i < words; i += Long.BYTES) {
+			count += Long.bitCount(buffer.getLong(i));
+		}
+		for (int i = words; i < length; i++) {
+			count += Integer.bitCount(buffer.get(i) & 0xff);
+		}
+		return count;
+	}
+
+	/**
+	 * Find the next set bit of a sequence treated as a bit set. Bits are numbered as by
+	 * {@link java.util.BitSet#valueOf(ByteBuffer)}: bit `n` is bit `n % 8` of the byte at index `n / 8`,
+	 * counting from the least significant bit. Bytes are skipped eight at a time, with word access as
+	 * described for {@link #xor(ByteSequence, ByteSequence, MutableByteSequence)}.
+	 * 
+	 * @param sequence sequence to search
+	 * @param fromIndex bit index to start searching from, inclusive
+	 * @return index of the next set bit, or `-1` if there is none
+	 * @throws IndexOutOfBoundsException if `fromIndex` is negative
+	 */
+	public static long nextSetBit(ByteSequence sequence, long fromIndex) {
+		return nextBit(sequence, fromIndex, 0L);
+	}
+
+	/**
+	 * Find the next clear bit of a sequence treated as a bit set, numbered as per
+	 * {@link #nextSetBit(ByteSequence, long)}. Unlike {@link java.util.BitSet}, the sequence has a fixed
+	 * size, so there may be no clear bit after `fromIndex`.
+	 * 
+	 * @param sequence sequence to search
+	 * @param fromIndex bit index to start searching from, inclusive
+	 * @return index of the next clear bit, or `-1` if there is none
+	 * @throws IndexOutOfBoundsException if `fromIndex` is negative
+	 */
+	public static long nextClearBit(ByteSequence sequence, long fromIndex) {
+		return nextBit(sequence, fromIndex, -1L);
+	}
+
+	// MSD radix sort of [from, to) over bytes from `depth` onward. Uses an explicit stack so that long
+	// common prefixes do not deepen the call stack. Ranges of aux and digits are used at the same indexes
+	// as the range being sorted, so disjoint ranges may be sorted concurrently.
+	private static void radixSort(ByteSequence[] a, ByteSequence[] aux, int[] digits, int from, int to, int depth) {
+		int[] stack = new int[3 * 64];
+		int top = 0;
+		stack[top++] = from;
+		stack[top++] = to;
+		stack[top++] = depth;
+		while (top > 0) {
+			int d = stack[--top];
+			int hi = stack[--top];
+			int lo = stack[--top];
+			if (hi - lo <= INSERTION_SORT_THRESHOLD) {
+				insertionSort(a, lo, hi, d);
+				continue;
+			}
+			int[] bucketStarts = distribute(a, aux, digits, lo, hi, d);
+			for (int bucket = 0; bucket < RADIX; bucket++) {
+				int bucketFrom = bucketStarts[bucket];
+				int bucketTo = bucketStarts[bucket + 1];
+				if (bucketTo - bucketFrom > 1) {
+					if (top + 3 > stack.length) {
+						stack = Arrays.copyOf(stack, stack.length * 2);
+					}
+					stack[top++] = bucketFrom;
+					stack[top++] = bucketTo;
+					stack[top++] = d + 1;
+				}
+			}
+		}
+	}
+
+	// stable distribution of [from, to) by the byte at `depth`, with sequences ending before that byte
+	// placed first. Returns the bounds of the bucket for each byte value: bucket b is
+	// [starts[b], starts[b + 1])
+	private static int[] distribute(ByteSequence[] a, ByteSequence[] aux, int[] digits, int from, int to, int depth) {
+		int[] counts = new int[RADIX + 2];
+		for (int i = from; i < to; i++) {
+			ByteSequence sequence = a[i];
+			int digit = depth < sequence.length() ? sequence.getUnsignedByte(depth) : -1;
+			digits[i] = digit;
+			counts[digit + 2]++;
+		}
+		counts[0] = from;
+		for (int r = 0; r < RADIX + 1; r++) {
+			counts[r + 1] += counts[r];
+		}
+		for (int i = from; i < to; i++) {
+			aux[counts[digits[i] + 1]++] = a[i];
+		}
+		System.arraycopy(aux, from, a, from, to - from);
+		return counts;
+	}
+
+	private static void insertionSort(ByteSequence[] a, int from, int to, int depth) {
+		for (int i = from + 1; i < to; i++) {
+			ByteSequence current = a[i];
+			int j = i;
+			while (j > from && compareFrom(a[j - 1], current, depth) > 0) {
+				a[j] = a[j - 1];
+				j--;
+			}
+			a[j] = current;
+		}
+	}
+
+	// compareTo, skipping a prefix already known to be equal
+	private static int compareFrom(ByteSequence a, ByteSequence b, int depth) {
+		int length = Math.min(a.length(), b.length());
+		int index = mismatch(a, b, depth, Math.max(length - depth, 0));
+		if (index >= 0) {
+			return a.getUnsignedByte(index) - b.getUnsignedByte(index);
+		}
+		return a.length() - b.length();
+	}
+
+	// equals across implementations
+	static boolean contentEquals(ByteSequence a, ByteSequence b) {
+		int length = a.length();
+		return length == b.length() && mismatch(a, b, 0, length) < 0;
+	}
+
+	// compareTo across implementations
+	static int compare(ByteSequence a, ByteSequence b) {
+		int length = Math.min(a.length(), b.length());
+		int index = mismatch(a, b, 0, length);
+		if (index >= 0) {
+			return a.getUnsignedByte(index) - b.getUnsignedByte(index);
+		}
+		return a.length() - b.length();
+	}
+
+	// index of the first difference within a common range, or -1. Sequences without a backing array are
+	// read in chunks through getBytes rather than a byte at a time
+	static int mismatch(ByteSequence a, ByteSequence b, int from, int length) {
+		byte[] arrayA = readableArrayOf(a);
+		byte[] arrayB = readableArrayOf(b);
+		int offsetA = arrayA != null ? readableArrayOffsetOf(a) : 0;
+		int offsetB = arrayB != null ? readableArrayOffsetOf(b) : 0;
+		if (arrayA != null && arrayB != null) {
+			int index = mismatch(arrayA, offsetA + from, arrayB, offsetB + from, length);
+			return index >= 0 ? from + index : -1;
+		}
+		int chunk = Math.min(length, COMPARE_CHUNK);
+		byte[] chunkA = arrayA == null ? new byte[chunk] : null;
+		byte[] chunkB = arrayB == null ? new byte[chunk] : null;
+		for (int position = from, end = from + length; position < end; position += chunk) {
+			chunk = Math.min(chunk, end - position);
+			int startA = offsetA + position;
+			int startB = offsetB + position;
+			if (chunkA != null) {
+				a.getBytes(position, chunkA, 0, chunk);
+				arrayA = chunkA;
+				startA = 0;
+			}
+			if (chunkB != null) {
+				b.getBytes(position, chunkB, 0, chunk);
+				arrayB = chunkB;
+				startB = 0;
+			}
+			int index = mismatch(arrayA, startA, arrayB, startB, chunk);
+			if (index >= 0) {
+				return position + index;
+			}
+		}
+		return -1;
+	}
+
+	private static int mismatch(byte[] a, int offsetA, byte[] b, int offsetB, int length) {
+		for (int i = 0; i < length; i++) {
+			if (a[offsetA + i] != b[offsetB + i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// indexOf across implementations, reading a sequence without a backing array in overlapping chunks
+	static int indexOf(ByteSequence source, ByteSequence target, int fromIndex) {
+		Objects.requireNonNull(target);
+		int sourceLength = source.length();
+		int targetLength = target.length();
+		if (fromIndex < 0) {
+			fromIndex = 0;
+		}
+		if (targetLength == 0) {
+			return Math.min(fromIndex, sourceLength);
+		}
+		if (fromIndex > sourceLength - targetLength) {
+			return ByteSequence.NOT_FOUND;
+		}
+		byte[] targetArray = readableArrayOf(target);
+		int targetOffset = 0;
+		if (targetArray != null) {
+			targetOffset = readableArrayOffsetOf(target);
+		}
+		else {
+			targetArray = new byte[targetLength];
+			target.getBytes(0, targetArray, 0, targetLength);
+		}
+		byte[] sourceArray = readableArrayOf(source);
+		if (sourceArray != null) {
+			return indexOf(sourceArray, readableArrayOffsetOf(source), sourceLength, targetArray, targetOffset,
+					targetLength, fromIndex);
+		}
+		// consecutive windows overlap by one less than the target length, so no match spans two of them
+		byte[] window = new byte[Math.min(sourceLength - fromIndex, Math.max(COMPARE_CHUNK, 2 * targetLength))];
+		for (int position = fromIndex; position <= sourceLength - targetLength; ) {
+			int count = Math.min(window.length, sourceLength - position);
+			source.getBytes(position, window, 0, count);
+			int index = indexOf(window, 0, count, targetArray, targetOffset, targetLength, 0);
+			if (index >= 0) {
+				return position + index;
+			}
+			position += count - targetLength + 1;
+		}
+		return ByteSequence.NOT_FOUND;
+	}
+
+	// search within a range of an array, returning an index relative to the start of the range
+	static int indexOf(byte[] source, int sourceOffset, int sourceLength, byte[] target, int targetOffset,
+			int targetLength, int fromIndex) {
+		if (fromIndex < 0) {
+			fromIndex = 0;
+		}
+		if (targetLength == 0) {
+			return Math.min(fromIndex, sourceLength);
+		}
+		byte first = target[targetOffset];
+		int last = sourceOffset + sourceLength - targetLength;
+		for (int i = sourceOffset + fromIndex; i <= last; i++) {
+			if (source[i] != first) {
+				continue;
+			}
+			int j = 1;
+			while (j < targetLength && source[i + j] == target[targetOffset + j]) {
+				j++;
+			}
+			if (j == targetLength) {
+				return i - sourceOffset;
+			}
+		}
+		return ByteSequence.NOT_FOUND;
+	}
+
+	static void checkGetBytes(ByteSequence sequence, int index, byte[] destination, int destinationOffset,
+			int length) {
+		Objects.requireNonNull(destination);
+		if (index < 0 || length < 0 || index > sequence.length() - length) {
+			throw new IndexOutOfBoundsException("index");
+		}
+		if (destinationOffset < 0 || destinationOffset > destination.length - length) {
+			throw new IndexOutOfBoundsException("destinationOffset");
+		}
+	}
+
+	// array variant of encodeUtf8, caller is responsible for having sized the destination
+	static int encodeUtf8(CharSequence input, byte[] destination, int offset) {
+		int length = input.length();
+		int index = offset;
+		int i = 0;
+		for (; i < length; i++) {
+			char c = input.charAt(i);
+			if (c >= 0x80) {
+				break;
+			}
+			destination[index++] = (byte) c;
+		}
+		for (; i < length; i++) {
+			char c = input.charAt(i);
+			if (c < 0x80) {
+				destination[index++] = (byte) c;
+			}
+			else if (c < 0x800) {
+				destination[index++] = (byte) (0xc0 | (c >> 6));
+				destination[index++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(input.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, input.charAt(++i));
+				destination[index++] = (byte) (0xf0 | (codePoint >> 18));
+				destination[index++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				destination[index++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				destination[index++] = (byte) (0x80 | (codePoint & 0x3f));
+			}
+			else if (Character.isSurrogate(c)) {
+				destination[index++] = (byte) '?';
+			}
+			else {
+				destination[index++] = (byte) (0xe0 | (c >> 12));
+				destination[index++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				destination[index++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+		return index - offset;
+	}
+
+	static void updateChecksum(Checksum checksum, ByteSequence sequence) {
+		byte[] array = readableArrayOf(sequence);
+		if (array != null) {
+			checksum.update(array, readableArrayOffsetOf(sequence), sequence.length());
+		}
+		else {
+			ChecksumSupport.update(checksum, sequence.getByteBuffer());
+		}
+	}
+
+	static void updateDigest(MessageDigest digest, ByteSequence sequence) {
+		byte[] array = readableArrayOf(sequence);
+		if (array != null) {
+			digest.update(array, readableArrayOffsetOf(sequence), sequence.length());
+		}
+		else {
+			digest.update(sequence.getByteBuffer());
+		}
+	}
+
+	// backing storage access for the types in this package, so bulk operations can work on arrays directly.
+	// sequence index i is located at array[arrayOffset + i].
+
+	static byte[] readableArrayOf(ByteSequence sequence) {
+		if (sequence instanceof Bytes) {
+			return ((Bytes) sequence).backingArray();
+		}
+		if (sequence instanceof BytesSubsequence) {
+			return ((BytesSubsequence) sequence).backingArray();
+		}
+		if (sequence instanceof ByteArray) {
+			return ((ByteArray) sequence).backingArray();
+		}
+		if (sequence instanceof MutableByteSequence) {
+			return writableArrayOf((MutableByteSequence) sequence);
+		}
+		return null;
+	}
+
+	static int readableArrayOffsetOf(ByteSequence sequence) {
+		if (sequence instanceof Bytes) {
+			return ((Bytes) sequence).backingOffset();
+		}
+		if (sequence instanceof BytesSubsequence) {
+			return ((BytesSubsequence) sequence).backingOffset();
+		}
+		return writableArrayOffsetOf((MutableByteSequence) sequence);
+	}
+
+	// null for sequences which are not writable through an array, including frozen ones
+	static byte[] writableArrayOf(MutableByteSequence sequence) {
+		if (sequence instanceof ByteArray) {
+			ByteArray array = (ByteArray) sequence;
+			return array.isFrozen() ? null : array.backingArray();
+		}
+		if (sequence instanceof BytesBuffer) {
+			BytesBuffer buffer = (BytesBuffer) sequence;
+			if (buffer.hasArray()) {
+				return buffer.array();
+			}
+		}
+		return null;
+	}
+
+	static int writableArrayOffsetOf(MutableByteSequence sequence) {
+		if (sequence instanceof ByteArray) {
+			return ((ByteArray) sequence).backingOffset();
+		}
+		return ((BytesBuffer) sequence).arrayOffset();
+	}
+
+	private enum BitOperation {
+		AND, OR, XOR, AND_NOT, NOT
+	}
+
+	private static long apply(BitOperation operation, long a, long b) {
+		switch (operation) {
+		case AND:
+			return a & b;
+		case OR:
+			return a | b;
+		case XOR:
+			return a ^ b;
+		case AND_NOT:
+			return a & ~b;
+		default:
+			return ~a;
+		}
+	}
+
+	private static MutableByteSequence bitwise(BitOperation operation, ByteSequence a, ByteSequence b,
+			MutableByteSequence destination) {
+		int length = a.length();
+		if (b.length() != length) {
+			throw new IllegalArgumentException("operand lengths differ");
+		}
+		if (destination.length() < length) {
+			throw new IllegalArgumentException("destination too short");
+		}
+		ByteBuffer left = readableBufferOf(a);
+		ByteBuffer right = b == a ? left : readableBufferOf(b);
+		ByteBuffer output = writableBufferOf(destination);
+		int words = length & -Long.BYTES;
+		if (output == null) {
+			for (int i = 0; i < length; i++) {
+				destination.put(i, (byte) apply(operation, left.get(i), right.get(i)));
+			}
+			return destination;
+		}
+		for (int i = 0; i < words; i += Long.BYTES) {
+			output.putLong(i, apply(operation, left.getLong(i), right.getLong(i)));
+		}
+		for (int i = words; i < length; i++) {
+			output.put(i, (byte) apply(operation, left.get(i), right.get(i)));
+		}
+		return destination;
+	}
+
+	// word at a time search for the first bit differing from `skip`, which is all zeros or all ones
+	private static long nextBit(ByteSequence sequence, long fromIndex, long skip) {
+		if (fromIndex < 0) {
+			throw new IndexOutOfBoundsException("fromIndex");
+		}
+		int length = sequence.length();
+		if (fromIndex >= (long) length * Byte.SIZE) {
+			return -1;
+		}
+		ByteBuffer buffer = readableBufferOf(sequence);
+		int index = (int) (fromIndex >>> 3);
+		// the first step reads a partial byte, masking off the bits before fromIndex
+		long bits = ((buffer.get(index) ^ skip) & 0xff) & (-1L << (fromIndex & 7));
+		if (bits != 0) {
+			return (long) index * Byte.SIZE + Long.numberOfTrailingZeros(bits);
+		}
+		index++;
+		for (; index <= length - Long.BYTES; index += Long.BYTES) {
+			bits = buffer.getLong(index) ^ skip;
+			if (bits != 0) {
+				return (long) index * Byte.SIZE + Long.numberOfTrailingZeros(bits);
+			}
+		}
+		for (; index < length; index++) {
+			bits = (buffer.get(index) ^ skip) & 0xff;
+			if (bits != 0) {
+				return (long) index * Byte.SIZE + Long.numberOfTrailingZeros(bits);
+			}
+		}
+		return -1;
+	}
+
+	// little-endian buffers, so that bit n of a word read at index i is bit n % 8 of byte i + n / 8
+	static ByteBuffer readableBufferOf(ByteSequence sequence) {
+		byte[] array = readableArrayOf(sequence);
+		ByteBuffer buffer = array != null
+				? ByteBuffer.wrap(array, readableArrayOffsetOf(sequence), sequence.length()).slice()
+				: sequence.getByteBuffer();
+		return buffer.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	static ByteBuffer writableBufferOf(MutableByteSequence sequence) {
+		byte[] array = writableArrayOf(sequence);
+		if (array != null) {
+			return ByteBuffer.wrap(array, writableArrayOffsetOf(sequence), sequence.length()).slice()
+					.order(ByteOrder.LITTLE_ENDIAN);
+		}
+		if (sequence instanceof BytesBuffer) {
+			return ((BytesBuffer) sequence).writableView(0).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return null;
+	}
+
+	// source of exactly the requested number of bytes, failing if they are not available
+	interface ContentReader {
+		void readFully(byte[] destination, int offset, int length) throws IOException;
+	}
+
+	/*
+	 * Read content of a declared length, growing the array as bytes actually arrive rather than trusting the
+	 * length up front, so a short malicious stream cannot force a large allocation. The array is at most
+	 * double the bytes received, and exactly sized once complete.
+	 */
+	static byte[] readBounded(int length, ContentReader reader) throws IOException {
+		byte[] content = new byte[Math.min(length, BOUNDED_READ_CHUNK)];
+		int read = 0;
+		while (true) {
+			reader.readFully(content, read, content.length - read);
+			read = content.length;
+			if (read == length) {
+				return content;
+			}
+			content = Arrays.copyOf(content, (int) Math.min(length, 2L * read));
+		}
+	}
+}
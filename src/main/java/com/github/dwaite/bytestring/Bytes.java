@@ -5,16 +5,27 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 import com.github.dwaite.bytestring.impl.BytesDataInput;
+import com.github.dwaite.bytestring.impl.EventSupport;
 import com.github.dwaite.bytestring.impl.ImmutableBytesSpliterator;
 
 /**
@@ -29,6 +40,7 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 	private static final long serialVersionUID = 1L;
 
 	private final byte[] bytes;
+	private transient volatile Bytes sha256;
 	
 	private static byte[] EMPTY_BYTES = new byte[0];
 	private static Bytes EMPTY = new Bytes(EMPTY_BYTES, true);
@@ -60,9 +72,16 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 		if (length == 0) {
 			bytes = EMPTY_BYTES;
 		} else {
-			this.bytes = new byte[length];
-			System.arraycopy(input, offset, bytes, 0, length);
+			Object event = EventSupport.beginCopy("Bytes(byte[])", length);
+			try {
+				this.bytes = new byte[length];
+				System.arraycopy(input, offset, bytes, 0, length);
+			}
+			finally {
+				EventSupport.end(event);
+			}
 		}
+		BytesMetrics.record(BytesMetrics.Operation.COPY_FROM_ARRAY, length);
 	}
 
 	/**
@@ -76,9 +95,16 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 			bytes = EMPTY_BYTES;
 		} 
 		else {
-			bytes = new byte[length];
-			buffer.get(bytes);				
+			Object event = EventSupport.beginCopy("Bytes(ByteBuffer)", length);
+			try {
+				bytes = new byte[length];
+				buffer.get(bytes);
+			}
+			finally {
+				EventSupport.end(event);
+			}
 		}
+		BytesMetrics.record(BytesMetrics.Operation.COPY_FROM_BUFFER, length);
 	}
 
 	/**
@@ -90,7 +116,25 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 	}
 	
 	public static Bytes ofUTF8(String input) {
-		return ofString(input, Charset.forName("UTF-8"));
+		return ofUTF8((CharSequence) input);
+	}
+
+	/**
+	 * Create a new Bytes instance holding the UTF-8 encoding of the given characters. The encoded length
+	 * is computed up front, so the result is encoded directly into a single exactly-sized array.
+	 *
+	 * @param input characters to encode
+	 * @return new Bytes instance
+	 * @see ByteSequences#encodeUtf8(CharSequence, MutableByteSequence, int)
+	 */
+	public static Bytes ofUTF8(CharSequence input) {
+		int length = ByteSequences.utf8Length(input);
+		if (length == 0) {
+			return EMPTY;
+		}
+		byte[] bytes = new byte[length];
+		ByteSequences.encodeUtf8(input, bytes, 0);
+		return new Bytes(bytes, true);
 	}
 
 	public static Bytes ofString(String input, Charset charset) {
@@ -135,6 +179,281 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 		return new Bytes(bytes, true);
 	}
 
+	/**
+	 * Read the whole content of a file. The array is sized from the length of the file when opened, filled
+	 * directly from the file channel, and then owned by the result without copying. Once the array is full,
+	 * a further byte is read to check for the end of the file, and the array is grown if there is more, so
+	 * files which grow after opening or report no length (such as those under `/proc`) are read in full.
+	 * 
+	 * @param path file to read
+	 * @return content of the file
+	 * @throws IOException if the file cannot be read, or is larger than the maximum array size
+	 */
+	public static Bytes readAll(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			byte[] bytes = new byte[fileLength(channel.size())];
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			ByteBuffer probe = ByteBuffer.allocate(1);
+			while (true) {
+				while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+					// read until full, or until the end of a file which shrank after opening
+				}
+				if (buffer.hasRemaining()) {
+					break;
+				}
+				probe.clear();
+				int read;
+				do {
+					read = channel.read(probe);
+				}
+				while (read == 0);
+				if (read < 0) {
+					break;
+				}
+				int position = buffer.position();
+				bytes = grow(bytes, probe.get(0));
+				buffer = ByteBuffer.wrap(bytes);
+				buffer.position(position + 1);
+			}
+			return ownedPrefix(bytes, buffer.position());
+		}
+	}
+
+	/**
+	 * Read the whole content of a file asynchronously, as per {@link #readAll(Path)}, including content
+	 * beyond the length of the file when opened. Reads are issued on an
+	 * {@link AsynchronousFileChannel}, so no thread blocks waiting for the file.
+	 * 
+	 * @param path file to read
+	 * @return future completed with the content of the file, or exceptionally with an {@link IOException} if
+	 *         the file cannot be read or is larger than the maximum array size
+	 */
+	public static CompletableFuture<Bytes> readAllAsync(Path path) {
+		CompletableFuture<Bytes> result = new CompletableFuture<>();
+		AsynchronousFileChannel channel;
+		try {
+			channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+		}
+		catch (IOException | RuntimeException e) {
+			result.completeExceptionally(e);
+			return result;
+		}
+		byte[] bytes;
+		try {
+			bytes = new byte[fileLength(channel.size())];
+		}
+		catch (IOException e) {
+			closeAndComplete(channel, result, null, e);
+			return result;
+		}
+		new FileReader(channel, bytes, result).next();
+		return result;
+	}
+
+	/**
+	 * Write sequences one after another to a file, creating it or replacing any existing content. The
+	 * content is passed to the file channel in place, with gathering writes.
+	 * 
+	 * @param path file to write
+	 * @param sequences sequences to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(Path path, ByteSequence... sequences) throws IOException {
+		ByteBuffer[] buffers = buffersOf(sequences);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			int first = 0;
+			while (first < buffers.length) {
+				channel.write(buffers, first, buffers.length - first);
+				while (first < buffers.length && !buffers[first].hasRemaining()) {
+					first++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write sequences one after another to a file asynchronously, creating it or replacing any existing
+	 * content. {@link AsynchronousFileChannel} has no gathering write, so each sequence is written in place
+	 * by a positional write issued when the previous one completes.
+	 * 
+	 * @param path file to write
+	 * @param sequences sequences to write
+	 * @return future completed once all content is written and the file closed, or exceptionally with an
+	 *         {@link IOException} if the file cannot be written
+	 */
+	public static CompletableFuture<Void> writeAsync(Path path, ByteSequence... sequences) {
+		ByteBuffer[] buffers = buffersOf(sequences);
+		CompletableFuture<Void> result = new CompletableFuture<>();
+		AsynchronousFileChannel channel;
+		try {
+			channel = AsynchronousFileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		}
+		catch (IOException | RuntimeException e) {
+			result.completeExceptionally(e);
+			return result;
+		}
+		new FileWriter(channel, buffers, result).next();
+		return result;
+	}
+
+	private static int fileLength(long size) throws IOException {
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IOException("file too large");
+		}
+		return (int) size;
+	}
+
+	// grow a full array read from a file which has more content, appending the byte read to find that out
+	private static byte[] grow(byte[] bytes, byte next) throws IOException {
+		int length = bytes.length;
+		if (length >= Integer.MAX_VALUE - 8) {
+			throw new IOException("file too large");
+		}
+		byte[] grown = Arrays.copyOf(bytes, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(length * 2L, 8192)));
+		grown[length] = next;
+		return grown;
+	}
+
+	// take ownership of the first length bytes read into an array, copying only if the file was short
+	private static Bytes ownedPrefix(byte[] bytes, int length) {
+		if (length == 0) {
+			return EMPTY;
+		}
+		return new Bytes(length == bytes.length ? bytes : Arrays.copyOf(bytes, length), true);
+	}
+
+	private static ByteBuffer[] buffersOf(ByteSequence[] sequences) {
+		ByteBuffer[] buffers = new ByteBuffer[sequences.length];
+		for (int i = 0; i < sequences.length; i++) {
+			buffers[i] = ByteSequences.readableBufferOf(Objects.requireNonNull(sequences[i]));
+		}
+		return buffers;
+	}
+
+	private static <T> void closeAndComplete(AsynchronousFileChannel channel, CompletableFuture<T> result, T value,
+			Throwable failure) {
+		try {
+			channel.close();
+		}
+		catch (IOException e) {
+			if (failure == null) {
+				failure = e;
+			}
+			else {
+				failure.addSuppressed(e);
+			}
+		}
+		if (failure != null) {
+			result.completeExceptionally(failure);
+		}
+		else {
+			result.complete(value);
+		}
+	}
+
+	// issues each read from the completion of the previous one
+	private static final class FileReader implements CompletionHandler<Integer, Void> {
+		private final AsynchronousFileChannel channel;
+		private final CompletableFuture<Bytes> result;
+		// single byte read once the array is full, to find whether the file has grown
+		private final ByteBuffer probe = ByteBuffer.allocate(1);
+		private byte[] bytes;
+		private ByteBuffer buffer;
+
+		FileReader(AsynchronousFileChannel channel, byte[] bytes, CompletableFuture<Bytes> result) {
+			this.channel = channel;
+			this.bytes = bytes;
+			this.buffer = ByteBuffer.wrap(bytes);
+			this.result = result;
+		}
+
+		void next() {
+			ByteBuffer target = buffer;
+			if (!buffer.hasRemaining()) {
+				probe.clear();
+				target = probe;
+			}
+			try {
+				channel.read(target, buffer.position(), null, this);
+			}
+			catch (RuntimeException e) {
+				failed(e, null);
+			}
+		}
+
+		@Override
+		public void completed(Integer read, Void attachment) {
+			if (read < 0) {
+				// the end of the file, which may have shrunk after opening
+				closeAndComplete(channel, result, ownedPrefix(bytes, buffer.position()), null);
+				return;
+			}
+			if (probe.position() > 0) {
+				int position = buffer.position();
+				try {
+					bytes = grow(bytes, probe.get(0));
+				}
+				catch (IOException e) {
+					failed(e, null);
+					return;
+				}
+				probe.clear();
+				buffer = ByteBuffer.wrap(bytes);
+				buffer.position(position + 1);
+			}
+			next();
+		}
+
+		@Override
+		public void failed(Throwable failure, Void attachment) {
+			closeAndComplete(channel, result, null, failure);
+		}
+	}
+
+	// issues each write from the completion of the previous one
+	private static final class FileWriter implements CompletionHandler<Integer, Void> {
+		private final AsynchronousFileChannel channel;
+		private final ByteBuffer[] buffers;
+		private final CompletableFuture<Void> result;
+		private int index;
+		private long position;
+
+		FileWriter(AsynchronousFileChannel channel, ByteBuffer[] buffers, CompletableFuture<Void> result) {
+			this.channel = channel;
+			this.buffers = buffers;
+			this.result = result;
+		}
+
+		void next() {
+			while (index < buffers.length && !buffers[index].hasRemaining()) {
+				index++;
+			}
+			if (index == buffers.length) {
+				closeAndComplete(channel, result, null, null);
+				return;
+			}
+			try {
+				channel.write(buffers[index], position, null, this);
+			}
+			catch (RuntimeException e) {
+				failed(e, null);
+			}
+		}
+
+		@Override
+		public void completed(Integer written, Void attachment) {
+			position += written;
+			next();
+		}
+
+		@Override
+		public void failed(Throwable failure, Void attachment) {
+			closeAndComplete(channel, result, null, failure);
+		}
+	}
+
 	@Override
 	public String asString(Charset charset) {
 		return new String(bytes, charset);
@@ -154,51 +473,13 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 	
 	public int indexOf(byte[] possibleSubsequence, int fromIndex) {
 		Objects.requireNonNull(possibleSubsequence);
-		if (fromIndex < 0) {
-			fromIndex = 0;
-		}
-		if (possibleSubsequence.length > length() - fromIndex) {
-			return -1;
-		}
-		for (int i = fromIndex ;i < length() - bytes.length;i++) {
-			boolean found = true;
-			for (int j = 0; j < possibleSubsequence.length; j++) {
-				if (bytes[i + j] != possibleSubsequence[j]) {
-					found = false;
-					break;
-				}
-			}
-			if (found) {
-				return i;
-			}
-		}
-		return -1;
+		return ByteSequences.indexOf(bytes, 0, bytes.length, possibleSubsequence, 0, possibleSubsequence.length,
+				fromIndex);
 	}
 	
 	@Override
 	public int indexOf(ByteSequence possibleSubsequence, int fromIndex) {
-		Objects.requireNonNull(possibleSubsequence);
-		int subsequenceLength = possibleSubsequence.length();
-		if (fromIndex < 0) {
-			fromIndex = 0;
-		}
-		if (length() - fromIndex < subsequenceLength) {
-			return NOT_FOUND;
-		}
-		
-		for (int i = fromIndex; i < length() - subsequenceLength; i++) {
-			for (int j = 0; i < subsequenceLength; i++) {
-				boolean found = true; 
-				if (possibleSubsequence.get(j) != bytes[i + j]) {
-					found = false;
-					break;
-				}
-				if (found) {
-					return i;
-				}
-			}
-		}
-		return NOT_FOUND;
+		return ByteSequences.indexOf(this, possibleSubsequence, fromIndex);
 	}
 
 	public int indexOf(byte[] possibleSubsequence) {
@@ -207,25 +488,7 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 	
 	public int indexOf(Bytes possibleSubsequence, int fromIndex) {
 		Objects.requireNonNull(possibleSubsequence);
-		if (fromIndex < 0) {
-			fromIndex = 0;
-		}
-		if (possibleSubsequence.length() > length() - fromIndex) {
-			return -1;
-		}
-		for (int i = fromIndex ;i < length() - bytes.length;i++) {
-			boolean found = true;
-			for (int j = 0; j < possibleSubsequence.length(); j++) {
-				if (bytes[i + j] != possibleSubsequence.bytes[j]) {
-					found = false;
-					break;
-				}
-			}
-			if (found) {
-				return i;
-			}
-		}
-		return -1;
+		return indexOf(possibleSubsequence.bytes, fromIndex);
 	}
 	public int indexOf(Bytes possibleSubsequence) {
 		return indexOf(possibleSubsequence, 0);
@@ -266,19 +529,13 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 		if (length() == 0) {
 			return EMPTY_BYTES;
 		}
+		BytesMetrics.record(BytesMetrics.Operation.TO_BYTE_ARRAY, bytes.length);
 		return Arrays.copyOf(bytes, bytes.length);
 	}
 
 	@Override
 	public int compareTo(ByteSequence o) {
-		int shortestLength = Math.min(length(), o.length());
-		for (int i = 0; i<shortestLength; i++) {
-			int comparison = bytes[i] - o.get(i);
-			if (comparison != 0) {
-				return comparison;
-			}
-		}
-		return length() - o.length();
+		return ByteSequences.compare(this, o);
 	}
 	
 	@Override
@@ -289,17 +546,7 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 		if (other == null || !(other instanceof ByteSequence)) {
 			return false;
 		}
-		ByteSequence o =  (ByteSequence) other;
-		if (o.length() != length()) {
-			return false;
-		}
-		int length = length();
-		for (int i = 0; i < length; i++) {
-			if (get(i) != o.get(i)) {
-				return false;
-			}
-		}
-		return true;
+		return ByteSequences.contentEquals(this, (ByteSequence) other);
 	}
 
 	@Override
@@ -333,9 +580,54 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 		return this;
 	}
 	
+	/**
+	 * Return the SHA-256 digest of this value. The digest is computed on first use and then retained by this
+	 * instance, which makes it inexpensive to use repeatedly as a content address.
+	 * 
+	 * @return 32 byte SHA-256 digest
+	 */
+	public Bytes sha256() {
+		Bytes result = sha256;
+		if (result == null) {
+			try {
+				result = digest(MessageDigest.getInstance("SHA-256"));
+			} catch (NoSuchAlgorithmException e) {
+				// every Java platform is required to support SHA-256
+				throw new IllegalStateException(e);
+			}
+			sha256 = result;
+		}
+		return result;
+	}
+
+	@Override
 	public ByteBuffer getByteBuffer() {
 		return ByteBuffer.wrap(bytes, 0, length()).asReadOnlyBuffer();
 	}
+
+	@Override
+	public void getBytes(int index, byte[] destination, int destinationOffset, int length) {
+		ByteSequences.checkGetBytes(this, index, destination, destinationOffset, length);
+		System.arraycopy(bytes, index, destination, destinationOffset, length);
+	}
+
+	@Override
+	public void copyTo(ByteBuffer destination) {
+		destination.put(bytes, 0, bytes.length);
+	}
+
+	@Override
+	public long retainedSize() {
+		return bytes.length;
+	}
+
+	byte[] backingArray() {
+		return bytes;
+	}
+
+	int backingOffset() {
+		return 0;
+	}
 	
 	@Override
 	public int length() {
@@ -356,9 +648,17 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 			return this;
 		}
 		int concattedLength = length + this.length();
-		byte[] concattedBytes = new byte[concattedLength];
-		System.arraycopy(bytes, 0, concattedBytes, 0, this.length());
-		System.arraycopy(suffix, 0, concattedBytes, this.length(), length);
+		Object event = EventSupport.beginCopy("Bytes.concat", concattedLength);
+		byte[] concattedBytes;
+		try {
+			concattedBytes = new byte[concattedLength];
+			System.arraycopy(bytes, 0, concattedBytes, 0, this.length());
+			System.arraycopy(suffix, 0, concattedBytes, this.length(), length);
+		}
+		finally {
+			EventSupport.end(event);
+		}
+		BytesMetrics.record(BytesMetrics.Operation.CONCAT, concattedLength);
 		return new Bytes(concattedBytes, true);
 	}
 
@@ -412,4 +712,17 @@ public class Bytes implements ByteSequence, Serializable, Comparable<ByteSequenc
 		output.write(bytes, 0, length());
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Serialize through a proxy holding only the content of this sequence.
+	 *
+	 * @return serialization proxy
+	 */
+	private Object writeReplace() {
+		return new Ser(Ser.BYTES_TYPE, this);
+	}
+
+	private void readObject(ObjectInputStream stream) throws InvalidObjectException {
+		throw Ser.proxyRequired();
+	}
+
+}
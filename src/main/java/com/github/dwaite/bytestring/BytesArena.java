@@ -0,0 +1,191 @@
+package com.github.dwaite.bytestring;
+
+import java.util.Objects;
+
+/**
+ * Allocator for many small immutable byte values, such as the fields parsed out of a batch of records.
+ *
+ * Values are copied into large shared pages and returned as {@link BytesSubsequence} views over those
+ * pages, so each value costs one small view object rather than a view plus its own array. Values too large
+ * to share a page well are given an array of their own.
+ *
+ * Pages are never written to again once a value has been copied in, so the views are as immutable as any
+ * other `BytesSubsequence`. {@link #release()} drops the arena's references to its pages so they can be
+ * reclaimed together; views handed out remain valid, but keep their page reachable for as long as they
+ * are. This class is not thread-safe.
+ */
+public class BytesArena {
+	/**
+	 * Default page size, in bytes
+	 */
+	public static final int DEFAULT_PAGE_SIZE = 1 << 16;
+
+	private static final byte[] EMPTY_BYTES = new byte[0];
+
+	private final int pageSize;
+	// values larger than this are given their own array rather than wasting the tail of a shared page
+	private final int largeValue;
+
+	private byte[] page;
+	private int position;
+	// array chosen by the last call to reserve
+	private byte[] reserved;
+	private int pageCount;
+	private long allocated;
+	private long used;
+	private long valueCount;
+
+	/**
+	 * Create an arena using pages of {@link #DEFAULT_PAGE_SIZE} bytes
+	 */
+	public BytesArena() {
+		this(DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Create an arena using pages of the given size
+	 *
+	 * @param pageSize size of each shared page, in bytes
+	 */
+	public BytesArena(int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("pageSize");
+		}
+		this.pageSize = pageSize;
+		this.largeValue = Math.max(pageSize / 8, 1);
+	}
+
+	/**
+	 * Copy a sequence into the arena
+	 *
+	 * @param sequence sequence to copy
+	 * @return immutable view of the copy
+	 */
+	public BytesSubsequence copyOf(ByteSequence sequence) {
+		Objects.requireNonNull(sequence);
+		byte[] array = ByteSequences.readableArrayOf(sequence);
+		if (array != null) {
+			return copyOf(array, ByteSequences.readableArrayOffsetOf(sequence), sequence.length());
+		}
+		int length = sequence.length();
+		int start = reserve(length);
+		byte[] target = reserved;
+		sequence.getByteBuffer().get(target, start, length);
+		return new BytesSubsequence(target, start, length, true);
+	}
+
+	/**
+	 * Copy a range of an array into the arena
+	 *
+	 * @param input array to copy from
+	 * @param offset offset of the range within the array
+	 * @param length length of the range
+	 * @return immutable view of the copy
+	 */
+	public BytesSubsequence copyOf(byte[] input, int offset, int length) {
+		Objects.requireNonNull(input);
+		if (offset < 0 || length < 0 || offset > input.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		int start = reserve(length);
+		byte[] target = reserved;
+		System.arraycopy(input, offset, target, start, length);
+		return new BytesSubsequence(target, start, length, true);
+	}
+
+	/**
+	 * Encode a string as UTF-8 directly into the arena
+	 *
+	 * @param input characters to encode
+	 * @return immutable view of the encoded bytes
+	 */
+	public BytesSubsequence ofUTF8(CharSequence input) {
+		int length = ByteSequences.utf8Length(input);
+		int start = reserve(length);
+		byte[] target = reserved;
+		ByteSequences.encodeUtf8(input, target, start);
+		return new BytesSubsequence(target, start, length, true);
+	}
+
+	/**
+	 * Drop all pages held by this arena, so that they may be reclaimed once no views over them remain
+	 * reachable. Statistics are reset, and the arena may continue to be used.
+	 */
+	public void release() {
+		page = null;
+		reserved = null;
+		position = 0;
+		pageCount = 0;
+		allocated = 0;
+		used = 0;
+		valueCount = 0;
+	}
+
+	/**
+	 * @return number of arrays allocated since creation or the last release, including those for large
+	 *         values
+	 */
+	public int pageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * @return number of values copied into the arena since creation or the last release
+	 */
+	public long valueCount() {
+		return valueCount;
+	}
+
+	/**
+	 * @return total size of the arrays allocated since creation or the last release
+	 */
+	public long allocatedBytes() {
+		return allocated;
+	}
+
+	/**
+	 * @return total size of the values copied into the arena since creation or the last release
+	 */
+	public long usedBytes() {
+		return used;
+	}
+
+	/**
+	 * @return proportion of the allocated bytes holding values, from 0 to 1. An arena with nothing
+	 *         allocated is considered full.
+	 */
+	public double fillRatio() {
+		return allocated == 0 ? 1.0 : (double) used / allocated;
+	}
+
+	@Override
+	public String toString() {
+		return "BytesArena [pageCount=" + pageCount + ", valueCount=" + valueCount + ", allocatedBytes="
+				+ allocated + ", usedBytes=" + used + "]";
+	}
+
+	// choose the array to hold a value of the given length, returning the offset of the value within it
+	private int reserve(int length) {
+		valueCount++;
+		used += length;
+		if (length == 0) {
+			reserved = EMPTY_BYTES;
+			return 0;
+		}
+		if (length > largeValue) {
+			pageCount++;
+			allocated += length;
+			reserved = new byte[length];
+			return 0;
+		}
+		if (page == null || pageSize - position < length) {
+			page = new byte[pageSize];
+			position = 0;
+			pageCount++;
+			allocated += pageSize;
+		}
+		reserved = page;
+		position += length;
+		return position - length;
+	}
+}
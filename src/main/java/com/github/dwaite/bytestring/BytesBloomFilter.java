@@ -0,0 +1,232 @@
+package com.github.dwaite.bytestring;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import com.github.dwaite.bytestring.impl.ConcurrentBits;
+
+/**
+ * Bloom filter over byte sequence keys, for cheaply ruling out keys which have never been added.
+ *
+ * The bit array is held in a {@link MutableByteSequence}, which may be a heap {@link ByteArray}, a direct
+ * {@link BytesBuffer}, or a buffer over a memory-mapped file. As the filter has no other state than the bit
+ * array and its hash count, a mapped filter is persisted as it is updated, and can be reloaded without
+ * copying by wrapping the mapping again with the same hash count.
+ *
+ * Each key is hashed once with {@link Murmur3Hash128}, and the bit positions derived from the two halves
+ * of the hash by double hashing. Bits are numbered as per {@link ByteSequences#nextSetBit(ByteSequence, long)}.
+ *
+ * Keys may be added and queried from any number of threads. Adding a key does not take a lock on Java 9 and
+ * later; on Java 8, setting each bit takes one of a set of striped locks.
+ *
+ * Freezing the storage, for instance with {@link ByteArray#toBytesAndRelease()} to hand it off for
+ * persistence, ends updates: further calls to {@link #put(ByteSequence)} throw, while queries still work.
+ */
+public class BytesBloomFilter {
+	// up to this many hash functions; a larger count is only optimal for impractically low error rates
+	private static final int MAX_HASH_COUNT = 255;
+	private static final double LN2 = Math.log(2);
+
+	private final MutableByteSequence storage;
+	private final ConcurrentBits bits;
+	private final long bitSize;
+	private final int hashCount;
+
+	/**
+	 * Create a filter over existing storage, which may already contain a filter populated with the same hash
+	 * count.
+	 *
+	 * @param storage writable {@link ByteArray} or {@link BytesBuffer} holding the bit array, with a length
+	 *        which is a positive multiple of eight bytes
+	 * @param hashCount number of bits set per key, from 1 to 255
+	 * @throws IllegalArgumentException if the storage is not writable or has an invalid length, or the hash
+	 *         count is out of range
+	 */
+	public BytesBloomFilter(MutableByteSequence storage, int hashCount) {
+		Objects.requireNonNull(storage);
+		if (hashCount < 1 || hashCount > MAX_HASH_COUNT) {
+			throw new IllegalArgumentException("hashCount");
+		}
+		int length = storage.length();
+		if (length == 0 || length % Long.BYTES != 0) {
+			throw new IllegalArgumentException("storage length must be a positive multiple of eight bytes");
+		}
+		ByteBuffer buffer = ByteSequences.writableBufferOf(storage);
+		if (buffer == null || buffer.isReadOnly()) {
+			throw new IllegalArgumentException("storage must be a writable ByteArray or BytesBuffer");
+		}
+		this.storage = storage;
+		this.bits = new ConcurrentBits(buffer);
+		this.bitSize = (long) length * Byte.SIZE;
+		this.hashCount = hashCount;
+	}
+
+	/**
+	 * Create a filter on the heap, sized for the given number of keys and false positive probability
+	 *
+	 * @param expectedInsertions number of keys expected to be added
+	 * @param falsePositiveProbability desired probability of {@link #mightContain(ByteSequence)} returning
+	 *        `true` for a key which was not added, once the expected number of keys have been added
+	 * @return new empty filter
+	 * @throws IllegalArgumentException if the parameters are out of range, or require more than the maximum
+	 *         array size
+	 */
+	public static BytesBloomFilter create(long expectedInsertions, double falsePositiveProbability) {
+		int length = byteLength(expectedInsertions, falsePositiveProbability);
+		return new BytesBloomFilter(new ByteArray(new byte[length]),
+				optimalHashCount(expectedInsertions, length));
+	}
+
+	/**
+	 * Create a filter in a direct buffer, sized as per {@link #create(long, double)}
+	 *
+	 * @param expectedInsertions number of keys expected to be added
+	 * @param falsePositiveProbability desired false positive probability at the expected number of keys
+	 * @return new empty filter
+	 * @throws IllegalArgumentException if the parameters are out of range, or require more than the maximum
+	 *         buffer size
+	 */
+	public static BytesBloomFilter createDirect(long expectedInsertions, double falsePositiveProbability) {
+		int length = byteLength(expectedInsertions, falsePositiveProbability);
+		return new BytesBloomFilter(BytesBuffer.allocateDirect(length), optimalHashCount(expectedInsertions, length));
+	}
+
+	/**
+	 * Compute the storage required for a filter, for instance to size a file to be mapped
+	 *
+	 * @param expectedInsertions number of keys expected to be added
+	 * @param falsePositiveProbability desired false positive probability at the expected number of keys
+	 * @return storage length in bytes, a multiple of eight
+	 * @throws IllegalArgumentException if the parameters are out of range, or require more than the maximum
+	 *         array size
+	 */
+	public static int byteLength(long expectedInsertions, double falsePositiveProbability) {
+		if (expectedInsertions <= 0) {
+			throw new IllegalArgumentException("expectedInsertions");
+		}
+		if (!(falsePositiveProbability > 0 && falsePositiveProbability < 1)) {
+			throw new IllegalArgumentException("falsePositiveProbability");
+		}
+		double bits = -expectedInsertions * Math.log(falsePositiveProbability) / (LN2 * LN2);
+		double words = Math.ceil(bits / Long.SIZE);
+		if (words > (Integer.MAX_VALUE - 8) / Long.BYTES) {
+			throw new IllegalArgumentException("filter too large");
+		}
+		return (int) words * Long.BYTES;
+	}
+
+	/**
+	 * Compute the hash count giving the lowest false positive probability for a given filter size
+	 *
+	 * @param expectedInsertions number of keys expected to be added
+	 * @param byteLength storage length in bytes
+	 * @return number of bits to set per key
+	 */
+	public static int optimalHashCount(long expectedInsertions, int byteLength) {
+		if (expectedInsertions <= 0) {
+			throw new IllegalArgumentException("expectedInsertions");
+		}
+		long count = Math.round((double) byteLength * Byte.SIZE / expectedInsertions * LN2);
+		return (int) Math.max(1, Math.min(count, MAX_HASH_COUNT));
+	}
+
+	/**
+	 * Add a key to the filter
+	 *
+	 * @param key key to add
+	 * @return `true` if any bit changed, in which case the key was definitely not present before. `false`
+	 *         means the key was probably, but not certainly, present already
+	 * @throws IllegalStateException if the storage has since been frozen
+	 */
+	public boolean put(ByteSequence key) {
+		if (isStorageFrozen()) {
+			throw new IllegalStateException("storage has been frozen");
+		}
+		long[] hash = Murmur3Hash128.hash128(key, 0);
+		long combined = hash[0];
+		boolean changed = false;
+		for (int i = 0; i < hashCount; i++) {
+			changed |= bits.set((combined & Long.MAX_VALUE) % bitSize);
+			combined += hash[1];
+		}
+		return changed;
+	}
+
+	/**
+	 * Test whether a key may have been added to the filter
+	 *
+	 * @param key key to test
+	 * @return `false` if the key has definitely not been added, or `true` if it probably has
+	 */
+	public boolean mightContain(ByteSequence key) {
+		long[] hash = Murmur3Hash128.hash128(key, 0);
+		long combined = hash[0];
+		for (int i = 0; i < hashCount; i++) {
+			if (!bits.get((combined & Long.MAX_VALUE) % bitSize)) {
+				return false;
+			}
+			combined += hash[1];
+		}
+		return true;
+	}
+
+	/**
+	 * @return storage holding the bit array, which can be persisted and later passed to
+	 *         {@link #BytesBloomFilter(MutableByteSequence, int)} along with {@link #hashCount()}
+	 */
+	public MutableByteSequence storage() {
+		return storage;
+	}
+
+	/**
+	 * @return number of bits in the filter
+	 */
+	public long bitSize() {
+		return bitSize;
+	}
+
+	/**
+	 * @return number of bits set per key
+	 */
+	public int hashCount() {
+		return hashCount;
+	}
+
+	/**
+	 * Estimate the current false positive probability from the proportion of bits set. This counts every
+	 * bit, so is proportional in cost to the size of the filter.
+	 *
+	 * @return estimated probability of {@link #mightContain(ByteSequence)} returning `true` for a key which
+	 *         has not been added
+	 */
+	public double expectedFalsePositiveProbability() {
+		return Math.pow((double) ByteSequences.popCount(storage) / bitSize, hashCount);
+	}
+
+	/**
+	 * Estimate the number of distinct keys added from the proportion of bits set. This counts every bit, so
+	 * is proportional in cost to the size of the filter.
+	 *
+	 * @return estimated number of distinct keys
+	 */
+	public long approximateElementCount() {
+		long setBits = ByteSequences.popCount(storage);
+		if (setBits == bitSize) {
+			return Long.MAX_VALUE;
+		}
+		return Math.round(-Math.log1p(-(double) setBits / bitSize) * bitSize / hashCount);
+	}
+
+	// bits are set through a buffer captured at construction, which freezing the storage does not revoke
+	private boolean isStorageFrozen() {
+		if (storage instanceof ByteArray) {
+			return ((ByteArray) storage).isFrozen();
+		}
+		return storage instanceof BytesBuffer && ((BytesBuffer) storage).isReadOnly();
+	}
+
+	@Override
+	public String toString() {
+		return "BytesBloomFilter [bitSize=" + bitSize + ", hashCount=" + hashCount + "]";
+	}
+}
@@ -9,9 +9,13 @@ import java.nio.LongBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.ShortBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Objects;
 
+import com.github.dwaite.bytestring.impl.EventSupport;
+
 public class BytesBuffer implements MutableByteSequence {
+	private static final int FILL_CHUNK = 4096;
 	
 	private java.nio.ByteBuffer byteBuffer;
 
@@ -26,11 +30,21 @@ public class BytesBuffer implements MutableByteSequence {
 	}
 	
 	public static BytesBuffer allocate(int capacity) {
+		BytesMetrics.record(BytesMetrics.Operation.ALLOCATE, capacity);
 		return new BytesBuffer(java.nio.ByteBuffer.allocate(capacity), true);
 	}
 
 	public static BytesBuffer allocateDirect(int capacity) {
-		return new BytesBuffer(java.nio.ByteBuffer.allocateDirect(capacity), true);
+		BytesMetrics.record(BytesMetrics.Operation.ALLOCATE_DIRECT, capacity);
+		Object event = EventSupport.beginDirectAllocation(capacity);
+		java.nio.ByteBuffer buffer;
+		try {
+			buffer = java.nio.ByteBuffer.allocateDirect(capacity);
+		}
+		finally {
+			EventSupport.end(event);
+		}
+		return new BytesBuffer(buffer, true);
 	}
 	
 	public static BytesBuffer wrap(byte[] bytes, int offset, int length) {
@@ -59,8 +73,32 @@ public class BytesBuffer implements MutableByteSequence {
 		return new BytesBuffer(dup.slice(), true);
 	}
 
+	/**
+	 * @return length of the backing array for heap buffers, or the capacity of this buffer for direct ones,
+	 *         as the storage behind a direct buffer slice is not visible
+	 */
+	@Override
+	public long retainedSize() {
+		return byteBuffer.hasArray() ? byteBuffer.array().length : byteBuffer.capacity();
+	}
+
+	/**
+	 * Copy the content of this sequence, the range [0, {@link #limit()}), into a new {@link Bytes} instance.
+	 * Unlike `new Bytes(ByteBuffer)`, this does not depend on or advance the position of the buffer, so
+	 * repeated calls return the same content.
+	 * 
+	 * @return copy of this sequence
+	 */
+	@Override
 	public Bytes toBytes() {
-		return new Bytes(byteBuffer);
+		int length = length();
+		if (length == 0) {
+			return Bytes.empty();
+		}
+		byte[] content = new byte[length];
+		getBytes(0, content, 0, length);
+		BytesMetrics.record(BytesMetrics.Operation.TO_BYTES, length);
+		return new Bytes(content, true);
 	}
 
 	public int length() {
@@ -73,6 +111,120 @@ public class BytesBuffer implements MutableByteSequence {
 		return charset.decode(output).toString();
 	}
 
+	@Override
+	public java.nio.ByteBuffer getByteBuffer() {
+		java.nio.ByteBuffer view = byteBuffer.asReadOnlyBuffer();
+		view.position(0);
+		return view.slice();
+	}
+
+	@Override
+	public void getBytes(int index, byte[] destination, int destinationOffset, int length) {
+		ByteSequences.checkGetBytes(this, index, destination, destinationOffset, length);
+		java.nio.ByteBuffer view = byteBuffer.duplicate();
+		view.position(index);
+		view.get(destination, destinationOffset, length);
+	}
+
+	@Override
+	public void copyTo(java.nio.ByteBuffer destination) {
+		java.nio.ByteBuffer view = byteBuffer.duplicate();
+		view.position(0);
+		destination.put(view);
+	}
+
+	@Override
+	public BytesBuffer put(int index, ByteSequence source, int sourceIndex, int length) {
+		if (index < 0 || length < 0 || index > length() - length) {
+			throw new IndexOutOfBoundsException("index");
+		}
+		if (sourceIndex < 0 || sourceIndex > source.length() - length) {
+			throw new IndexOutOfBoundsException("sourceIndex");
+		}
+		java.nio.ByteBuffer from = source.getByteBuffer();
+		from.limit(sourceIndex + length);
+		from.position(sourceIndex);
+		// heap buffers transfer with arraycopy and direct buffers with a memmove, so shared storage is safe
+		writableView(index).put(from);
+		return this;
+	}
+
+	@Override
+	public BytesBuffer fill(int from, int to, byte value) {
+		if (from < 0 || from > to || to > length()) {
+			throw new IndexOutOfBoundsException("from");
+		}
+		if (byteBuffer.hasArray()) {
+			Arrays.fill(byteBuffer.array(), byteBuffer.arrayOffset() + from, byteBuffer.arrayOffset() + to, value);
+			return this;
+		}
+		java.nio.ByteBuffer view = writableView(from);
+		view.limit(to);
+		byte[] pattern = new byte[Math.min(to - from, FILL_CHUNK)];
+		Arrays.fill(pattern, value);
+		while (view.hasRemaining()) {
+			view.put(pattern, 0, Math.min(pattern.length, view.remaining()));
+		}
+		return this;
+	}
+
+	@Override
+	public BytesBuffer copyWithin(int sourceIndex, int destinationIndex, int length) {
+		if (sourceIndex < 0 || length < 0 || sourceIndex > length() - length) {
+			throw new IndexOutOfBoundsException("sourceIndex");
+		}
+		if (destinationIndex < 0 || destinationIndex > length() - length) {
+			throw new IndexOutOfBoundsException("destinationIndex");
+		}
+		java.nio.ByteBuffer from = byteBuffer.duplicate();
+		from.limit(sourceIndex + length);
+		from.position(sourceIndex);
+		writableView(destinationIndex).put(from);
+		return this;
+	}
+
+	/**
+	 * Hand the backing array of a heap buffer over to an immutable sequence covering [0, {@link #limit()}),
+	 * without copying. This instance is switched to a read-only view of the same content, so any further
+	 * writes through it throw {@link java.nio.ReadOnlyBufferException}.
+	 * 
+	 * The caller must not retain any other writable reference to the storage, such as the array this buffer
+	 * was wrapped around, or duplicates and slices taken from it.
+	 * 
+	 * @return immutable sequence sharing the backing array
+	 * @throws UnsupportedOperationException if the buffer is direct or already read-only
+	 */
+	public BytesSubsequence freeze() {
+		if (!byteBuffer.hasArray()) {
+			throw new UnsupportedOperationException("only writable heap buffers can be frozen");
+		}
+		byte[] array = byteBuffer.array();
+		int offset = byteBuffer.arrayOffset();
+		int length = limit();
+		byteBuffer = byteBuffer.asReadOnlyBuffer().order(byteBuffer.order());
+		return length == 0 ? BytesSubsequence.empty() : new BytesSubsequence(array, offset, length, true);
+	}
+
+	/**
+	 * Hand the content of a heap buffer over to a {@link Bytes} instance, as per {@link #freeze()}. The
+	 * backing array is adopted without copying when the sequence covers all of it, and otherwise the range
+	 * is copied.
+	 * 
+	 * @return Bytes instance holding the content of this buffer
+	 * @throws UnsupportedOperationException if the buffer is direct or already read-only
+	 */
+	public Bytes toBytesAndRelease() {
+		return freeze().toBytes();
+	}
+
+	// writable view of [index, length()) sharing this buffer's storage, independent of its position
+	java.nio.ByteBuffer writableView(int index) {
+		java.nio.ByteBuffer view = byteBuffer.duplicate();
+		view.limit(limit());
+		view.position(index);
+		return view;
+	}
+
 	// Buffer methods
 	public final int capacity() {
 		return byteBuffer.capacity();
@@ -164,7 +316,7 @@ public class BytesBuffer implements MutableByteSequence {
 		if (isReadOnly()) {
 			return this;
 		}
-		return new BytesBuffer(byteBuffer.asReadOnlyBuffer(), true);
+		return new BytesBuffer(byteBuffer.asReadOnlyBuffer().order(byteBuffer.order()), true);
 	}
 	
 	public byte get() {
@@ -214,12 +366,24 @@ public class BytesBuffer implements MutableByteSequence {
 	}
 	
 	public BytesBuffer load() {
-		((MappedByteBuffer)byteBuffer).load();
+		Object event = EventSupport.beginMappedOperation("load", capacity());
+		try {
+			((MappedByteBuffer)byteBuffer).load();
+		}
+		finally {
+			EventSupport.end(event);
+		}
 		return this;
 	}
 	
 	public BytesBuffer force() {
-		((MappedByteBuffer)byteBuffer).force();
+		Object event = EventSupport.beginMappedOperation("force", capacity());
+		try {
+			((MappedByteBuffer)byteBuffer).force();
+		}
+		finally {
+			EventSupport.end(event);
+		}
 		return this;
 	}
 	
@@ -391,17 +555,7 @@ public class BytesBuffer implements MutableByteSequence {
 		if (other == null || !(other instanceof ByteSequence)) {
 			return false;
 		}
-		ByteSequence o =  (ByteSequence) other;
-		if (o.length() != length()) {
-			return false;
-		}
-		int length = length();
-		for (int i = 0; i < length; i++) {
-			if (get(i) != o.get(i)) {
-				return false;
-			}
-		}
-		return true;
+		return ByteSequences.contentEquals(this, (ByteSequence) other);
 	}
 
 	@Override
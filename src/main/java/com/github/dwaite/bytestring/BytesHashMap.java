@@ -0,0 +1,201 @@
+package com.github.dwaite.bytestring;
+
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Hash map from byte content to object values, avoiding the per-entry objects of a
+ * `HashMap<Bytes, V>`.
+ *
+ * Key bytes are copied into large shared pages on insertion, and entries are held in parallel arrays
+ * using open addressing, so an entry costs no objects beyond its value. Lookups accept any
+ * {@link ByteSequence}, or a range of a `byte[]`, without the caller allocating a key object.
+ *
+ * Keys compare by content, as with {@link ByteSequence#equals(Object)}. Null values are not permitted.
+ * This class is not thread-safe.
+ *
+ * @param <V> type of values
+ */
+public class BytesHashMap<V> extends BytesKeyTable {
+	private Object[] values;
+
+	/**
+	 * Create an empty map
+	 */
+	public BytesHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create an empty map sized to hold the given number of entries without resizing
+	 * 
+	 * @param expectedSize expected number of entries
+	 */
+	public BytesHashMap(int expectedSize) {
+		super(expectedSize);
+	}
+
+	/**
+	 * @param key key to look up
+	 * @return value for the key, or `null` if the key is not present
+	 */
+	public V get(ByteSequence key) {
+		return valueAt(find(key));
+	}
+
+	/**
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @return value for the key, or `null` if the key is not present
+	 */
+	public V get(byte[] key, int offset, int length) {
+		return valueAt(find(key, offset, length));
+	}
+
+	/**
+	 * @param key key to look up
+	 * @return `true` if the key is present
+	 */
+	public boolean containsKey(ByteSequence key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @return `true` if the key is present
+	 */
+	public boolean containsKey(byte[] key, int offset, int length) {
+		return find(key, offset, length) >= 0;
+	}
+
+	/**
+	 * Associate a value with a key. The bytes of a new key are copied into the map.
+	 * 
+	 * @param key key to associate with
+	 * @param value non-null value
+	 * @return previous value for the key, or `null` if the key was not present
+	 */
+	public V put(ByteSequence key, V value) {
+		Objects.requireNonNull(value);
+		return replace(findOrInsert(key), value);
+	}
+
+	/**
+	 * Associate a value with a key. The bytes of a new key are copied into the map.
+	 * 
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @param value non-null value
+	 * @return previous value for the key, or `null` if the key was not present
+	 */
+	public V put(byte[] key, int offset, int length, V value) {
+		Objects.requireNonNull(value);
+		return replace(findOrInsert(key, offset, length), value);
+	}
+
+	/**
+	 * Return the value for a key, computing and inserting it if the key is not present.
+	 * 
+	 * @param key key to look up
+	 * @param mappingFunction function computing a non-null value, given the `key` argument
+	 * @return existing or computed value
+	 */
+	public V computeIfAbsent(ByteSequence key, Function<? super ByteSequence, ? extends V> mappingFunction) {
+		Objects.requireNonNull(mappingFunction);
+		int slot = find(key);
+		if (slot >= 0) {
+			return valueAt(slot);
+		}
+		V value = Objects.requireNonNull(mappingFunction.apply(key));
+		replace(findOrInsert(key), value);
+		return value;
+	}
+
+	/**
+	 * @param key key to remove
+	 * @return value for the removed key, or `null` if the key was not present
+	 */
+	public V remove(ByteSequence key) {
+		return removeSlot(find(key));
+	}
+
+	/**
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @return value for the removed key, or `null` if the key was not present
+	 */
+	public V remove(byte[] key, int offset, int length) {
+		return removeSlot(find(key, offset, length));
+	}
+
+	/**
+	 * Pass each entry to the given action. Keys are immutable views over the internal key storage, and
+	 * remain valid after the entry is removed.
+	 * 
+	 * @param action action to perform for each entry
+	 */
+	public void forEach(BiConsumer<? super ByteSequence, ? super V> action) {
+		Objects.requireNonNull(action);
+		int capacity = capacity();
+		for (int slot = 0; slot < capacity; slot++) {
+			if (isLive(slot)) {
+				action.accept(keyAt(slot), valueAt(slot));
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	private V replace(int slot, V value) {
+		if (slot < 0) {
+			values[-(slot + 1)] = value;
+			return null;
+		}
+		V previous = valueAt(slot);
+		values[slot] = value;
+		return previous;
+	}
+
+	private V removeSlot(int slot) {
+		if (slot < 0) {
+			return null;
+		}
+		V previous = valueAt(slot);
+		removeAt(slot);
+		return previous;
+	}
+
+	@Override
+	int valueBytesPerSlot() {
+		return 4;
+	}
+
+	@Override
+	void allocateValues(int capacity) {
+		values = new Object[capacity];
+	}
+
+	@Override
+	Object detachValues() {
+		return values;
+	}
+
+	@Override
+	void transferValue(Object oldValues, int oldSlot, int newSlot) {
+		values[newSlot] = ((Object[]) oldValues)[oldSlot];
+	}
+
+	@Override
+	void clearValue(int slot) {
+		values[slot] = null;
+	}
+}
@@ -0,0 +1,368 @@
+package com.github.dwaite.bytestring;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Shared key storage for the byte-keyed hash maps. Key bytes are copied once into large shared pages rather
+ * than held as individual objects, and slots are located by linear probing over parallel arrays holding the
+ * spread hash, the page location and the length of each key. Subclasses hold the values in further arrays
+ * indexed by slot.
+ *
+ * Key bytes are never modified once written, so views over the pages can be safely handed out as
+ * immutable {@link BytesSubsequence} instances.
+ */
+abstract class BytesKeyTable {
+	static final int DEFAULT_CAPACITY = 16;
+	private static final int PAGE_SIZE = 1 << 16;
+	// keys larger than this are given a page of their own rather than wasting the tail of a shared page
+	private static final int LARGE_KEY = PAGE_SIZE / 8;
+	private static final float LOAD_FACTOR = 0.65f;
+	private static final int EMPTY = 0;
+	private static final int REMOVED = -1;
+	// location of every zero-length key, which takes no page space
+	private static final long EMPTY_KEY = -1L;
+	private static final byte[] NO_KEY_BYTES = new byte[0];
+
+	private int[] hashes;
+	private long[] locations;
+	// key length per slot, or REMOVED for a tombstone. Slots with a hash of EMPTY are unused.
+	private int[] lengths;
+	private int mask;
+	private int size;
+	private int tombstones;
+
+	private byte[][] pages;
+	private int pageCount;
+	// index of the shared page currently being filled, or -1
+	private int currentPage = -1;
+	private int pagePosition;
+	private long liveKeyBytes;
+	private long deadKeyBytes;
+
+	BytesKeyTable(int initialCapacity) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("initialCapacity");
+		}
+		allocateSlots(tableSizeFor(initialCapacity));
+		pages = new byte[4][];
+	}
+
+	/**
+	 * @return number of keys present
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return `true` if no keys are present
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all keys, releasing the storage used for key bytes.
+	 */
+	public void clear() {
+		allocateSlots(DEFAULT_CAPACITY);
+		pages = new byte[4][];
+		pageCount = 0;
+		currentPage = -1;
+		pagePosition = 0;
+		liveKeyBytes = 0;
+		deadKeyBytes = 0;
+		size = 0;
+		tombstones = 0;
+	}
+
+	/**
+	 * Estimate the memory retained by this map: its slot arrays and key pages, but not any value objects
+	 * referenced by it.
+	 *
+	 * @return approximate size in bytes
+	 */
+	public long memoryFootprint() {
+		long capacity = hashes.length;
+		long footprint = capacity * (Integer.BYTES + Long.BYTES + Integer.BYTES) + capacity * valueBytesPerSlot();
+		footprint += pages.length * 4L;
+		for (int i = 0; i < pageCount; i++) {
+			footprint += pages[i].length;
+		}
+		return footprint + 4 * 16L;
+	}
+
+	abstract int valueBytesPerSlot();
+
+	// called from the constructor, so subclass value fields must not have initializers
+	abstract void allocateValues(int capacity);
+
+	// called during rehash with the value storage detached by detachValues()
+	abstract Object detachValues();
+
+	abstract void transferValue(Object oldValues, int oldSlot, int newSlot);
+
+	abstract void clearValue(int slot);
+
+	final BytesSubsequence keyAt(int slot) {
+		long location = locations[slot];
+		return new BytesSubsequence(page(location), position(location), lengths[slot], true);
+	}
+
+	final boolean isLive(int slot) {
+		return hashes[slot] != EMPTY && lengths[slot] != REMOVED;
+	}
+
+	final int capacity() {
+		return hashes.length;
+	}
+
+	final int find(ByteSequence key) {
+		Objects.requireNonNull(key);
+		byte[] array = ByteSequences.readableArrayOf(key);
+		if (array != null) {
+			return find(array, ByteSequences.readableArrayOffsetOf(key), key.length());
+		}
+		int hash = spread(key.hashCode());
+		int length = key.length();
+		for (int slot = hash & mask; hashes[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if (hashes[slot] == hash && lengths[slot] == length && keyEquals(slot, key)) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	final int find(byte[] key, int offset, int length) {
+		checkKey(key, offset, length);
+		int hash = spread(hash(key, offset, length));
+		for (int slot = hash & mask; hashes[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if (hashes[slot] == hash && lengths[slot] == length && keyEquals(slot, key, offset, length)) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	// returns the slot of an existing key, or -(slot + 1) for a newly inserted key
+	final int findOrInsert(ByteSequence key) {
+		Objects.requireNonNull(key);
+		byte[] array = ByteSequences.readableArrayOf(key);
+		if (array != null) {
+			return findOrInsert(array, ByteSequences.readableArrayOffsetOf(key), key.length());
+		}
+		int hash = spread(key.hashCode());
+		int length = key.length();
+		int slot = hash & mask;
+		int firstRemoved = -1;
+		for (; hashes[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if (lengths[slot] == REMOVED) {
+				if (firstRemoved < 0) {
+					firstRemoved = slot;
+				}
+			}
+			else if (hashes[slot] == hash && lengths[slot] == length && keyEquals(slot, key)) {
+				return slot;
+			}
+		}
+		slot = claim(firstRemoved >= 0 ? firstRemoved : slot, hash, length);
+		byte[] page = page(locations[slot]);
+		int position = position(locations[slot]);
+		for (int i = 0; i < length; i++) {
+			page[position + i] = key.get(i);
+		}
+		return -(slot + 1);
+	}
+
+	final int findOrInsert(byte[] key, int offset, int length) {
+		checkKey(key, offset, length);
+		int hash = spread(hash(key, offset, length));
+		int slot = hash & mask;
+		int firstRemoved = -1;
+		for (; hashes[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if (lengths[slot] == REMOVED) {
+				if (firstRemoved < 0) {
+					firstRemoved = slot;
+				}
+			}
+			else if (hashes[slot] == hash && lengths[slot] == length && keyEquals(slot, key, offset, length)) {
+				return slot;
+			}
+		}
+		slot = claim(firstRemoved >= 0 ? firstRemoved : slot, hash, length);
+		System.arraycopy(key, offset, page(locations[slot]), position(locations[slot]), length);
+		return -(slot + 1);
+	}
+
+	final void removeAt(int slot) {
+		deadKeyBytes += lengths[slot];
+		liveKeyBytes -= lengths[slot];
+		lengths[slot] = REMOVED;
+		clearValue(slot);
+		size--;
+		tombstones++;
+	}
+
+	// reserve the slot and key storage for a new key, growing the table first if needed
+	private int claim(int slot, int hash, int length) {
+		if (lengths[slot] == REMOVED && hashes[slot] != EMPTY) {
+			tombstones--;
+		}
+		else if (size + tombstones + 1 > (int) (hashes.length * LOAD_FACTOR)) {
+			rehash(size + 1 > (int) (hashes.length * LOAD_FACTOR / 2) ? hashes.length * 2 : hashes.length);
+			slot = hash & mask;
+			while (hashes[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+		}
+		hashes[slot] = hash;
+		lengths[slot] = length;
+		locations[slot] = allocateKey(length);
+		liveKeyBytes += length;
+		size++;
+		return slot;
+	}
+
+	private long allocateKey(int length) {
+		if (length == 0) {
+			return EMPTY_KEY;
+		}
+		if (length > LARGE_KEY) {
+			return (long) addPage(new byte[length]) << 32;
+		}
+		if (currentPage < 0 || PAGE_SIZE - pagePosition < length) {
+			currentPage = addPage(new byte[PAGE_SIZE]);
+			pagePosition = 0;
+		}
+		long location = ((long) currentPage << 32) | pagePosition;
+		pagePosition += length;
+		return location;
+	}
+
+	private byte[] page(long location) {
+		return location == EMPTY_KEY ? NO_KEY_BYTES : pages[(int) (location >>> 32)];
+	}
+
+	private static int position(long location) {
+		return location == EMPTY_KEY ? 0 : (int) location;
+	}
+
+	private int addPage(byte[] page) {
+		if (pageCount == pages.length) {
+			pages = Arrays.copyOf(pages, pages.length * 2);
+		}
+		pages[pageCount] = page;
+		return pageCount++;
+	}
+
+	private void rehash(int newCapacity) {
+		int[] oldHashes = hashes;
+		long[] oldLocations = locations;
+		int[] oldLengths = lengths;
+		Object oldValues = detachValues();
+		allocateSlots(newCapacity);
+		byte[][] oldPages = pages;
+		boolean compact = deadKeyBytes > liveKeyBytes / 2 && deadKeyBytes > PAGE_SIZE;
+		if (compact) {
+			pages = new byte[4][];
+			pageCount = 0;
+			currentPage = -1;
+			pagePosition = 0;
+			deadKeyBytes = 0;
+		}
+		tombstones = 0;
+		for (int oldSlot = 0; oldSlot < oldHashes.length; oldSlot++) {
+			int hash = oldHashes[oldSlot];
+			int length = oldLengths[oldSlot];
+			if (hash == EMPTY || length == REMOVED) {
+				continue;
+			}
+			int slot = hash & mask;
+			while (hashes[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			hashes[slot] = hash;
+			lengths[slot] = length;
+			if (compact) {
+				long location = allocateKey(length);
+				long oldLocation = oldLocations[oldSlot];
+				byte[] oldPage = oldLocation == EMPTY_KEY ? NO_KEY_BYTES : oldPages[(int) (oldLocation >>> 32)];
+				System.arraycopy(oldPage, position(oldLocation), page(location), position(location), length);
+				locations[slot] = location;
+			}
+			else {
+				locations[slot] = oldLocations[oldSlot];
+			}
+			transferValue(oldValues, oldSlot, slot);
+		}
+	}
+
+	private void allocateSlots(int capacity) {
+		hashes = new int[capacity];
+		locations = new long[capacity];
+		lengths = new int[capacity];
+		mask = capacity - 1;
+		allocateValues(capacity);
+	}
+
+	private boolean keyEquals(int slot, ByteSequence key) {
+		byte[] page = page(locations[slot]);
+		int position = position(locations[slot]);
+		int length = lengths[slot];
+		for (int i = 0; i < length; i++) {
+			if (page[position + i] != key.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean keyEquals(int slot, byte[] key, int offset, int length) {
+		byte[] page = page(locations[slot]);
+		int position = position(locations[slot]);
+		for (int i = 0; i < length; i++) {
+			if (page[position + i] != key[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void checkKey(byte[] key, int offset, int length) {
+		Objects.requireNonNull(key);
+		if (offset < 0 || length < 0 || offset > key.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	// same polynomial as ByteSequence.hashCode(), so array and sequence keys hash alike
+	private static int hash(byte[] key, int offset, int length) {
+		if (length == 0) {
+			return 0;
+		}
+		int hash = 1;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + key[i];
+		}
+		return hash;
+	}
+
+	// murmur3 finalizer, as the polynomial hash clusters badly under linear probing. Never returns EMPTY.
+	private static int spread(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash == EMPTY ? 1 : hash;
+	}
+
+	private static int tableSizeFor(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+}
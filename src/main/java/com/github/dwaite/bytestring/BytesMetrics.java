@@ -0,0 +1,217 @@
+package com.github.dwaite.bytestring;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Opt-in counters of the copies and allocations made by this library, for finding copy hot spots in a
+ * running service.
+ *
+ * Counting is off by default, in which case each instrumented operation pays only a read of a volatile
+ * flag. It is enabled with {@link #setEnabled(boolean)}, through JMX, or by starting the JVM with the
+ * system property `com.github.dwaite.bytestring.metrics=true`, which also registers the MBean. Counters are
+ * {@link LongAdder}s, so concurrent updates from many threads do not contend.
+ */
+public final class BytesMetrics {
+	/**
+	 * JMX object name under which {@link #registerMBean()} registers the metrics
+	 */
+	public static final String OBJECT_NAME = "com.github.dwaite.bytestring:type=BytesMetrics";
+
+	/**
+	 * Operations which copy or allocate byte content
+	 */
+	public enum Operation {
+		/** {@link Bytes} created by copying an array */
+		COPY_FROM_ARRAY,
+		/** {@link Bytes} created by copying the remaining content of a buffer */
+		COPY_FROM_BUFFER,
+		/** concatenation of a sequence and a suffix into a new array */
+		CONCAT,
+		/** conversion of a sequence to {@link Bytes} which copies its content */
+		TO_BYTES,
+		/** {@link Bytes#toByteArray()} and the equivalents on other sequences */
+		TO_BYTE_ARRAY,
+		/** {@link BytesSubsequence#compact()} of a view pinning excess storage */
+		COMPACT,
+		/** {@link BytesBuffer#allocate(int)} */
+		ALLOCATE,
+		/** {@link BytesBuffer#allocateDirect(int)} */
+		ALLOCATE_DIRECT
+	}
+
+	private static final Operation[] OPERATIONS = Operation.values();
+	private static final LongAdder[] COUNTS = adders();
+	private static final LongAdder[] BYTES = adders();
+
+	private static volatile boolean enabled;
+
+	static {
+		if (Boolean.getBoolean("com.github.dwaite.bytestring.metrics")) {
+			enabled = true;
+			try {
+				registerMBean();
+			}
+			catch (JMException | SecurityException e) {
+				// counting still works without the MBean
+			}
+		}
+	}
+
+	private BytesMetrics() {
+	}
+
+	/**
+	 * @return `true` if operations are being counted
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled `true` to start counting operations, `false` to stop. Existing counts are kept.
+	 */
+	public static void setEnabled(boolean enabled) {
+		BytesMetrics.enabled = enabled;
+	}
+
+	/**
+	 * @param operation operation to report
+	 * @return number of times the operation has been performed while enabled
+	 */
+	public static long count(Operation operation) {
+		return COUNTS[operation.ordinal()].sum();
+	}
+
+	/**
+	 * @param operation operation to report
+	 * @return number of bytes copied or allocated by the operation while enabled
+	 */
+	public static long bytes(Operation operation) {
+		return BYTES[operation.ordinal()].sum();
+	}
+
+	/**
+	 * @return number of bytes copied or allocated by each operation while enabled
+	 */
+	public static Map<Operation, Long> snapshot() {
+		Map<Operation, Long> result = new EnumMap<>(Operation.class);
+		for (Operation operation : OPERATIONS) {
+			result.put(operation, bytes(operation));
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Reset all counts to zero. Updates made concurrently with the reset may or may not be retained.
+	 */
+	public static void reset() {
+		for (int i = 0; i < OPERATIONS.length; i++) {
+			COUNTS[i].reset();
+			BYTES[i].reset();
+		}
+	}
+
+	/**
+	 * Register the metrics with the platform MBean server under {@value #OBJECT_NAME}, if not already
+	 * registered
+	 *
+	 * @return the object name
+	 * @throws JMException if registration fails
+	 */
+	public static ObjectName registerMBean() throws JMException {
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (!server.isRegistered(name)) {
+			try {
+				server.registerMBean(new Bean(), name);
+			}
+			catch (InstanceAlreadyExistsException e) {
+				// registered concurrently
+			}
+		}
+		return name;
+	}
+
+	/**
+	 * Remove the metrics from the platform MBean server, if registered
+	 *
+	 * @throws JMException if unregistration fails
+	 */
+	public static void unregisterMBean() throws JMException {
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+	}
+
+	// called at each instrumented site; kept small so that it inlines to a flag check when disabled
+	static void record(Operation operation, long bytes) {
+		if (enabled) {
+			COUNTS[operation.ordinal()].increment();
+			BYTES[operation.ordinal()].add(bytes);
+		}
+	}
+
+	private static LongAdder[] adders() {
+		LongAdder[] adders = new LongAdder[Operation.values().length];
+		for (int i = 0; i < adders.length; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+
+	private static final class Bean implements BytesMetricsMXBean {
+		@Override
+		public boolean isEnabled() {
+			return BytesMetrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			BytesMetrics.setEnabled(enabled);
+		}
+
+		@Override
+		public Map<String, Long> getOperationCounts() {
+			Map<String, Long> result = new LinkedHashMap<>();
+			for (Operation operation : OPERATIONS) {
+				result.put(operation.name(), count(operation));
+			}
+			return result;
+		}
+
+		@Override
+		public Map<String, Long> getOperationBytes() {
+			Map<String, Long> result = new LinkedHashMap<>();
+			for (Operation operation : OPERATIONS) {
+				result.put(operation.name(), bytes(operation));
+			}
+			return result;
+		}
+
+		@Override
+		public long getTotalBytes() {
+			long total = 0;
+			for (Operation operation : OPERATIONS) {
+				total += bytes(operation);
+			}
+			return total;
+		}
+
+		@Override
+		public void reset() {
+			BytesMetrics.reset();
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.github.dwaite.bytestring;
+
+import java.util.Map;
+
+/**
+ * Management interface for {@link BytesMetrics}, registered under {@value BytesMetrics#OBJECT_NAME}.
+ * Counts are keyed by the name of each {@link BytesMetrics.Operation}.
+ */
+public interface BytesMetricsMXBean {
+	/**
+	 * @return `true` if operations are being counted
+	 */
+	boolean isEnabled();
+
+	/**
+	 * @param enabled `true` to start counting operations, `false` to stop
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * @return number of times each operation has been performed while enabled
+	 */
+	Map<String, Long> getOperationCounts();
+
+	/**
+	 * @return number of bytes copied or allocated by each operation while enabled
+	 */
+	Map<String, Long> getOperationBytes();
+
+	/**
+	 * @return total bytes copied or allocated across all operations while enabled
+	 */
+	long getTotalBytes();
+
+	/**
+	 * Reset all counts to zero
+	 */
+	void reset();
+}
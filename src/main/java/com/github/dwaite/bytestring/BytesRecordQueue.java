@@ -0,0 +1,245 @@
+package com.github.dwaite.bytestring;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded queue of variable-length binary records, written by many producer threads and drained by a
+ * single consumer thread, over a {@link BytesBuffer} which is typically direct.
+ *
+ * A producer claims space for a record with a single compare-and-set of the tail counter, writes the
+ * record in place, and then commits it. Records are laid out in the buffer as a four byte big-endian length
+ * followed by the payload, aligned to eight bytes. A record which would straddle the end of the buffer is
+ * preceded by padding to the end, and placed at the start. Neither padding nor alignment gaps are written to
+ * the buffer, so its raw content is not a parseable log; records should only be read through
+ * {@link #drain(Consumer, int)}.
+ *
+ * Commits are tracked separately from the buffer, with one marker per eight byte slot, so that the
+ * consumer sees each record only once it has been completely written, even though producers may commit
+ * out of order. The consumer stops at the first uncommitted record.
+ */
+public class BytesRecordQueue {
+	private static final int HEADER = Integer.BYTES;
+	private static final int ALIGNMENT = 8;
+	private static final int ALIGNMENT_SHIFT = 3;
+
+	// counter slots, with 64 bytes of padding before, between and after them
+	private static final int HEAD = 7;
+	private static final int TAIL = 15;
+	private static final int COUNTER_SLOTS = 23;
+
+	private final BytesBuffer buffer;
+	private final int capacity;
+	private final int mask;
+	private final AtomicLongArray counters = new AtomicLongArray(COUNTER_SLOTS);
+	// per slot: 0 if uncommitted, payload length + 1 for a committed record, or -(bytes) for padding
+	private final AtomicIntegerArray markers;
+
+	/**
+	 * Create a queue over the whole capacity of the given buffer
+	 *
+	 * @param buffer writable buffer, with a capacity which is a power of two of at least 16 bytes
+	 */
+	public BytesRecordQueue(BytesBuffer buffer) {
+		Objects.requireNonNull(buffer);
+		if (buffer.isReadOnly()) {
+			throw new IllegalArgumentException("buffer is read-only");
+		}
+		capacity = buffer.capacity();
+		if (capacity < 2 * ALIGNMENT || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("capacity must be a power of two of at least 16");
+		}
+		this.buffer = buffer;
+		buffer.clear();
+		mask = capacity - 1;
+		markers = new AtomicIntegerArray(capacity >>> ALIGNMENT_SHIFT);
+	}
+
+	/**
+	 * Create a queue over a new direct buffer
+	 *
+	 * @param capacity capacity in bytes, a power of two of at least 16
+	 * @return new queue
+	 */
+	public static BytesRecordQueue allocateDirect(int capacity) {
+		return new BytesRecordQueue(BytesBuffer.allocateDirect(capacity));
+	}
+
+	/**
+	 * @return capacity of the queue in bytes, including record headers and alignment
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return largest record payload which can be claimed
+	 */
+	public int maxRecordLength() {
+		return capacity / 2 - HEADER;
+	}
+
+	/**
+	 * Claim space for a record, to be written in place and then committed. Any producer thread.
+	 *
+	 * @param length length of the record payload
+	 * @return the claim, or `null` if the queue does not currently have space
+	 * @throws IllegalArgumentException if the length is negative or greater than {@link #maxRecordLength()}
+	 */
+	public Claim tryClaim(int length) {
+		if (length < 0 || length > maxRecordLength()) {
+			throw new IllegalArgumentException("length");
+		}
+		int size = align(HEADER + length);
+		while (true) {
+			long tail = counters.get(TAIL);
+			int index = (int) (tail & mask);
+			int toEnd = capacity - index;
+			int required = size <= toEnd ? size : toEnd + size;
+			if (tail + required - counters.get(HEAD) > capacity) {
+				return null;
+			}
+			if (counters.compareAndSet(TAIL, tail, tail + required)) {
+				if (required != size) {
+					// nothing to write for padding, so it is committed immediately
+					markers.lazySet(index >>> ALIGNMENT_SHIFT, -toEnd);
+					index = 0;
+				}
+				return new Claim(index, length);
+			}
+		}
+	}
+
+	/**
+	 * Copy a record into the queue. Any producer thread.
+	 *
+	 * @param record record payload
+	 * @return `true` if the record was added, or `false` if the queue does not currently have space
+	 * @throws IllegalArgumentException if the record is longer than {@link #maxRecordLength()}
+	 */
+	public boolean offer(ByteSequence record) {
+		Claim claim = tryClaim(record.length());
+		if (claim == null) {
+			return false;
+		}
+		claim.payload.writableView(0).put(record.getByteBuffer());
+		claim.commit();
+		return true;
+	}
+
+	/**
+	 * Pass committed records to the given action, in claim order, as read-only views over the buffer. The
+	 * space of the drained records is released once this method returns, so the views must not be retained.
+	 * Consumer only.
+	 *
+	 * @param action action to perform for each record payload
+	 * @param maxRecords maximum number of records to drain
+	 * @return number of records drained
+	 */
+	public int drain(Consumer<? super ByteSequence> action, int maxRecords) {
+		Objects.requireNonNull(action);
+		long head = counters.get(HEAD);
+		// markers are only cleared on release, so stop before wrapping back around to the drained records
+		long tail = counters.get(TAIL);
+		long position = head;
+		int drained = 0;
+		while (drained < maxRecords && position < tail) {
+			int index = (int) (position & mask);
+			int marker = markers.get(index >>> ALIGNMENT_SHIFT);
+			if (marker == 0) {
+				break;
+			}
+			if (marker < 0) {
+				position += -marker;
+				continue;
+			}
+			int length = marker - 1;
+			ByteBuffer view = buffer.getByteBuffer();
+			view.limit(index + HEADER + length);
+			view.position(index + HEADER);
+			action.accept(BytesBuffer.wrap(view.slice()));
+			position += align(HEADER + length);
+			drained++;
+		}
+		release(head, position);
+		return drained;
+	}
+
+	/**
+	 * Drain all committed records. Consumer only.
+	 *
+	 * @param action action to perform for each record payload
+	 * @return number of records drained
+	 * @see #drain(Consumer, int)
+	 */
+	public int drain(Consumer<? super ByteSequence> action) {
+		return drain(action, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return approximate number of bytes claimed and not yet drained
+	 */
+	public int size() {
+		// head first, so that the tail read after it cannot be behind it
+		long head = counters.get(HEAD);
+		long tail = counters.get(TAIL);
+		return (int) Math.min(capacity, tail - head);
+	}
+
+	// clear the markers of drained slots before publishing the space back to producers
+	private void release(long from, long to) {
+		if (from == to) {
+			return;
+		}
+		for (long position = from; position < to; ) {
+			int slot = (int) (position & mask) >>> ALIGNMENT_SHIFT;
+			int marker = markers.get(slot);
+			markers.lazySet(slot, 0);
+			position += marker < 0 ? -marker : align(HEADER + marker - 1);
+		}
+		counters.lazySet(HEAD, to);
+	}
+
+	private static int align(int size) {
+		return (size + ALIGNMENT - 1) & -ALIGNMENT;
+	}
+
+	/**
+	 * Space claimed for a single record, which must be committed once written
+	 */
+	public final class Claim {
+		private final int index;
+		private final BytesBuffer payload;
+		private boolean committed;
+
+		private Claim(int index, int length) {
+			this.index = index;
+			// each claim works on its own duplicate of the buffer, as producers write concurrently
+			ByteBuffer view = buffer.writableView(index);
+			view.limit(index + HEADER + length);
+			view.putInt(length);
+			this.payload = BytesBuffer.wrap(view.slice());
+		}
+
+		/**
+		 * @return writable view of the record payload within the queue buffer
+		 */
+		public MutableByteSequence payload() {
+			return payload;
+		}
+
+		/**
+		 * Make the record visible to the consumer. The payload must not be modified afterward.
+		 */
+		public void commit() {
+			if (committed) {
+				throw new IllegalStateException("already committed");
+			}
+			committed = true;
+			markers.lazySet(index >>> ALIGNMENT_SHIFT, payload.length() + 1);
+		}
+	}
+}
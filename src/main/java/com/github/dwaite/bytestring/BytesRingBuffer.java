@@ -0,0 +1,411 @@
+package com.github.dwaite.bytestring;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Lock-free byte stream between exactly one producer thread and one consumer thread, over a heap or direct
+ * {@link BytesBuffer} used as a ring.
+ *
+ * The producer copies data into the free space of the ring and then publishes it with an ordered write of
+ * the tail counter; the consumer reads published data and releases its space with an ordered write of the
+ * head counter. Neither side takes a lock. The counters are held far apart in a padded array so that the
+ * two threads do not contend on a cache line.
+ *
+ * The non-blocking operations ({@link #offer(ByteSequence)}, {@link #poll(MutableByteSequence, int, int)}
+ * and {@link #drain(Consumer)}) transfer as much as currently possible. The blocking operations wait for
+ * space or data according to a {@link WaitStrategy}.
+ *
+ * Producer operations must only be called from a single thread at a time, and likewise consumer
+ * operations.
+ */
+public class BytesRingBuffer {
+	// counter slots, with 64 bytes of padding before, between and after them
+	private static final int HEAD = 7;
+	private static final int TAIL = 15;
+	private static final int COUNTER_SLOTS = 23;
+
+	private final BytesBuffer buffer;
+	private final int capacity;
+	private final int mask;
+	private final WaitStrategy waitStrategy;
+	private final AtomicLongArray counters = new AtomicLongArray(COUNTER_SLOTS);
+
+	/**
+	 * Create a ring buffer over the whole capacity of the given buffer
+	 *
+	 * @param buffer writable buffer, with a capacity which is a power of two
+	 * @param waitStrategy strategy for the blocking operations to wait with
+	 */
+	public BytesRingBuffer(BytesBuffer buffer, WaitStrategy waitStrategy) {
+		Objects.requireNonNull(buffer);
+		this.waitStrategy = Objects.requireNonNull(waitStrategy);
+		if (buffer.isReadOnly()) {
+			throw new IllegalArgumentException("buffer is read-only");
+		}
+		capacity = buffer.capacity();
+		if (capacity == 0 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("capacity must be a power of two");
+		}
+		this.buffer = buffer;
+		buffer.clear();
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Create a ring buffer over a new heap buffer
+	 *
+	 * @param capacity capacity in bytes, a power of two
+	 * @param waitStrategy strategy for the blocking operations to wait with
+	 * @return new ring buffer
+	 */
+	public static BytesRingBuffer allocate(int capacity, WaitStrategy waitStrategy) {
+		return new BytesRingBuffer(BytesBuffer.allocate(capacity), waitStrategy);
+	}
+
+	/**
+	 * Create a ring buffer over a new direct buffer
+	 *
+	 * @param capacity capacity in bytes, a power of two
+	 * @param waitStrategy strategy for the blocking operations to wait with
+	 * @return new ring buffer
+	 */
+	public static BytesRingBuffer allocateDirect(int capacity, WaitStrategy waitStrategy) {
+		return new BytesRingBuffer(BytesBuffer.allocateDirect(capacity), waitStrategy);
+	}
+
+	/**
+	 * @return capacity of the ring in bytes
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return number of bytes published and not yet consumed. This is a snapshot when called from threads
+	 *         other than the producer and consumer.
+	 */
+	public int size() {
+		// head first: the tail only moves forward, so it cannot fall behind the head read before it
+		long head = counters.get(HEAD);
+		long tail = counters.get(TAIL);
+		// the head may have advanced and the producer refilled the space in between
+		return (int) Math.min(capacity, tail - head);
+	}
+
+	/**
+	 * @return `true` if there are no bytes available to the consumer
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Copy as much of the given data as currently fits into the ring. Producer only.
+	 *
+	 * @param data data to write
+	 * @return number of bytes written, from the start of `data`
+	 */
+	public int offer(ByteSequence data) {
+		return offer(data, 0, data.length());
+	}
+
+	/**
+	 * Copy as much of the given range of data as currently fits into the ring. Producer only.
+	 *
+	 * @param data data to write
+	 * @param offset index of the range within `data`
+	 * @param length length of the range
+	 * @return number of bytes written, from the start of the range
+	 */
+	public int offer(ByteSequence data, int offset, int length) {
+		checkRange(data, offset, length);
+		long tail = counters.get(TAIL);
+		int count = (int) Math.min(length, capacity - (tail - counters.get(HEAD)));
+		if (count == 0) {
+			return 0;
+		}
+		ByteBuffer source = data.getByteBuffer();
+		source.position(offset);
+		int index = (int) (tail & mask);
+		int first = Math.min(count, capacity - index);
+		source.limit(offset + first);
+		buffer.writableView(index).put(source);
+		if (first < count) {
+			source.limit(offset + count);
+			buffer.writableView(0).put(source);
+		}
+		counters.lazySet(TAIL, tail + count);
+		waitStrategy.signalAll();
+		return count;
+	}
+
+	/**
+	 * Copy all of the given data into the ring, waiting for space as needed. Producer only.
+	 *
+	 * @param data data to write
+	 * @throws InterruptedException if interrupted while waiting. Some of the data may have been written.
+	 */
+	public void put(ByteSequence data) throws InterruptedException {
+		int length = data.length();
+		int written = 0;
+		while (written < length) {
+			written += offer(data, written, length - written);
+			if (written < length) {
+				waitStrategy.await(this::hasSpace);
+			}
+		}
+	}
+
+	/**
+	 * Copy as much available data as fits into the given range of the destination. Consumer only.
+	 *
+	 * @param destination sequence to copy into
+	 * @param offset index within the destination to copy to
+	 * @param length maximum number of bytes to copy
+	 * @return number of bytes copied
+	 */
+	public int poll(MutableByteSequence destination, int offset, int length) {
+		checkRange(destination, offset, length);
+		long head = counters.get(HEAD);
+		int count = (int) Math.min(length, counters.get(TAIL) - head);
+		if (count == 0) {
+			return 0;
+		}
+		int index = (int) (head & mask);
+		int first = Math.min(count, capacity - index);
+		copyOut(index, first, destination, offset);
+		if (first < count) {
+			copyOut(0, count - first, destination, offset + first);
+		}
+		counters.lazySet(HEAD, head + count);
+		waitStrategy.signalAll();
+		return count;
+	}
+
+	/**
+	 * Copy available data into the given range of the destination, waiting until at least one byte is
+	 * available. Consumer only.
+	 *
+	 * @param destination sequence to copy into
+	 * @param offset index within the destination to copy to
+	 * @param length maximum number of bytes to copy, greater than zero
+	 * @return number of bytes copied
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public int take(MutableByteSequence destination, int offset, int length) throws InterruptedException {
+		if (length == 0) {
+			throw new IllegalArgumentException("length");
+		}
+		int count;
+		while ((count = poll(destination, offset, length)) == 0) {
+			waitStrategy.await(this::hasData);
+		}
+		return count;
+	}
+
+	/**
+	 * Pass all available data to the given action as read-only views over the ring, without copying. The
+	 * data is passed as one view, or two when it wraps around the end of the ring, and its space is released
+	 * once the action returns, so the views must not be retained. Consumer only.
+	 *
+	 * @param action action to perform for each view
+	 * @return number of bytes consumed
+	 */
+	public int drain(Consumer<? super ByteSequence> action) {
+		Objects.requireNonNull(action);
+		long head = counters.get(HEAD);
+		int count = (int) (counters.get(TAIL) - head);
+		if (count == 0) {
+			return 0;
+		}
+		int index = (int) (head & mask);
+		int first = Math.min(count, capacity - index);
+		action.accept(view(index, first));
+		if (first < count) {
+			action.accept(view(0, count - first));
+		}
+		counters.lazySet(HEAD, head + count);
+		waitStrategy.signalAll();
+		return count;
+	}
+
+	private boolean hasSpace() {
+		return counters.get(TAIL) - counters.get(HEAD) < capacity;
+	}
+
+	private boolean hasData() {
+		return counters.get(TAIL) != counters.get(HEAD);
+	}
+
+	private ByteSequence view(int index, int length) {
+		ByteBuffer view = buffer.getByteBuffer();
+		view.limit(index + length);
+		view.position(index);
+		return BytesBuffer.wrap(view.slice());
+	}
+
+	private void copyOut(int index, int length, MutableByteSequence destination, int offset) {
+		ByteBuffer source = buffer.getByteBuffer();
+		source.limit(index + length);
+		source.position(index);
+		byte[] array = ByteSequences.writableArrayOf(destination);
+		if (array != null) {
+			source.get(array, ByteSequences.writableArrayOffsetOf(destination) + offset, length);
+		}
+		else if (destination instanceof BytesBuffer) {
+			((BytesBuffer) destination).writableView(offset).put(source);
+		}
+		else {
+			for (int i = 0; i < length; i++) {
+				destination.put(offset + i, source.get());
+			}
+		}
+	}
+
+	private static void checkRange(ByteSequence sequence, int offset, int length) {
+		Objects.requireNonNull(sequence);
+		if (offset < 0 || length < 0 || offset > sequence.length() - length) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Strategy for a thread blocked on a {@link BytesRingBuffer} to wait for the other side
+	 */
+	public interface WaitStrategy {
+		/**
+		 * Wait until the given condition holds
+		 *
+		 * @param condition condition to wait for, which may be evaluated repeatedly
+		 * @throws InterruptedException if interrupted while waiting
+		 */
+		void await(BooleanSupplier condition) throws InterruptedException;
+
+		/**
+		 * Wake any waiting threads so that they re-evaluate their condition. Called after every transfer, so
+		 * this should be inexpensive when no thread is waiting.
+		 */
+		void signalAll();
+
+		/**
+		 * @return strategy which busy-spins, for the lowest latency at the cost of a dedicated core
+		 */
+		static WaitStrategy spinning() {
+			return new SpinningWait(Integer.MAX_VALUE);
+		}
+
+		/**
+		 * @return strategy which spins briefly and then yields the processor between checks
+		 */
+		static WaitStrategy yielding() {
+			return new SpinningWait(100);
+		}
+
+		/**
+		 * @return strategy which parks the thread for short periods between checks
+		 */
+		static WaitStrategy parking() {
+			return new ParkingWait();
+		}
+
+		/**
+		 * @return strategy which blocks on a condition until signalled, using the least processor time
+		 */
+		static WaitStrategy blocking() {
+			return new BlockingWait();
+		}
+	}
+
+	private static final class SpinningWait implements WaitStrategy {
+		private final int spinsBeforeYield;
+
+		SpinningWait(int spinsBeforeYield) {
+			this.spinsBeforeYield = spinsBeforeYield;
+		}
+
+		@Override
+		public void await(BooleanSupplier condition) throws InterruptedException {
+			for (long spins = 0; !condition.getAsBoolean(); spins++) {
+				if (spins >= spinsBeforeYield) {
+					Thread.yield();
+				}
+				if ((spins & 0xfff) == 0xfff && Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+		}
+
+		@Override
+		public void signalAll() {
+		}
+	}
+
+	private static final class ParkingWait implements WaitStrategy {
+		private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+		@Override
+		public void await(BooleanSupplier condition) throws InterruptedException {
+			while (!condition.getAsBoolean()) {
+				LockSupport.parkNanos(this, PARK_NANOS);
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+		}
+
+		@Override
+		public void signalAll() {
+		}
+	}
+
+	private static final class BlockingWait implements WaitStrategy {
+		// counters are published with ordered rather than volatile writes, so a waiter can miss a signal
+		// racing with its last check. Waits are bounded so that such a miss only costs this much latency.
+		private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition changed = lock.newCondition();
+		private final AtomicInteger waiters = new AtomicInteger();
+
+		@Override
+		public void await(BooleanSupplier condition) throws InterruptedException {
+			if (condition.getAsBoolean()) {
+				return;
+			}
+			lock.lockInterruptibly();
+			waiters.incrementAndGet();
+			try {
+				while (!condition.getAsBoolean()) {
+					changed.awaitNanos(MAX_WAIT_NANOS);
+				}
+			}
+			finally {
+				waiters.decrementAndGet();
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void signalAll() {
+			if (waiters.get() == 0) {
+				return;
+			}
+			lock.lock();
+			try {
+				changed.signalAll();
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -5,6 +5,8 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
@@ -15,6 +17,7 @@ import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 import com.github.dwaite.bytestring.impl.BytesDataInput;
+import com.github.dwaite.bytestring.impl.EventSupport;
 import com.github.dwaite.bytestring.impl.ImmutableBytesSpliterator;
 
 /**
@@ -31,6 +34,8 @@ public class BytesSubsequence implements ByteSequence, Serializable, Comparable<
 	private final byte[] bytes;
 	private final int offset;
 	private final int length;
+	// compact copy, cached by compact()
+	private transient volatile BytesSubsequence compacted;
 	
 	private static byte[] EMPTY_BYTES = new byte[0];
 	private static BytesSubsequence EMPTY = new BytesSubsequence(EMPTY_BYTES, 0, 0, true);
@@ -50,9 +55,16 @@ public class BytesSubsequence implements ByteSequence, Serializable, Comparable<
 		if (length == 0) {
 			bytes = EMPTY_BYTES;
 		} else {
-			this.bytes = new byte[length];
-			System.arraycopy(input, offset, bytes, 0, length);
+			Object event = EventSupport.beginCopy("BytesSubsequence(byte[])", length);
+			try {
+				this.bytes = new byte[length];
+				System.arraycopy(input, offset, bytes, 0, length);
+			}
+			finally {
+				EventSupport.end(event);
+			}
 		}
+		BytesMetrics.record(BytesMetrics.Operation.COPY_FROM_ARRAY, length);
 	}
 
 	BytesSubsequence(byte[] owned, int offset, int length, boolean distinguisher) {
@@ -80,51 +92,13 @@ public class BytesSubsequence implements ByteSequence, Serializable, Comparable<
 	
 	public int indexOf(byte[] possibleSubsequence, int fromIndex) {
 		Objects.requireNonNull(possibleSubsequence);
-		if (fromIndex < 0) {
-			fromIndex = 0;
-		}
-		if (possibleSubsequence.length > length - fromIndex) {
-			return -1;
-		}
-		for (int i = offset + fromIndex ;i < offset + length - bytes.length;i++) {
-			boolean found = true;
-			for (int j = 0; j < possibleSubsequence.length; j++) {
-				if (bytes[i + j] != possibleSubsequence[j]) {
-					found = false;
-					break;
-				}
-			}
-			if (found) {
-				return i - offset;
-			}
-		}
-		return -1;
+		return ByteSequences.indexOf(bytes, offset, length, possibleSubsequence, 0, possibleSubsequence.length,
+				fromIndex);
 	}
 	
 	@Override
 	public int indexOf(ByteSequence possibleSubsequence, int fromIndex) {
-		Objects.requireNonNull(possibleSubsequence);
-		int subsequenceLength = possibleSubsequence.length();
-		if (fromIndex < 0) {
-			fromIndex = 0;
-		}
-		if (length - fromIndex < subsequenceLength) {
-			return NOT_FOUND;
-		}
-		
-		for (int i = offset + fromIndex; i < offset + length - subsequenceLength; i++) {
-			for (int j = 0; i < subsequenceLength; i++) {
-				boolean found = true; 
-				if (possibleSubsequence.get(j) != bytes[i + j]) {
-					found = false;
-					break;
-				}
-				if (found) {
-					return i - offset;
-				}
-			}
-		}
-		return NOT_FOUND;
+		return ByteSequences.indexOf(this, possibleSubsequence, fromIndex);
 	}
 
 	public int indexOf(byte[] possibleSubsequence) {
@@ -133,25 +107,8 @@ public class BytesSubsequence implements ByteSequence, Serializable, Comparable<
 	
 	public int indexOf(BytesSubsequence possibleSubsequence, int fromIndex) {
 		Objects.requireNonNull(possibleSubsequence);
-		if (fromIndex < 0) {
-			fromIndex = 0;
-		}
-		if (possibleSubsequence.length > length - fromIndex) {
-			return -1;
-		}
-		for (int i = offset + fromIndex ;i < offset + length - bytes.length;i++) {
-			boolean found = true;
-			for (int j = 0; j < possibleSubsequence.length; j++) {
-				if (bytes[i + j] != possibleSubsequence.bytes[j + possibleSubsequence.offset]) {
-					found = false;
-					break;
-				}
-			}
-			if (found) {
-				return i - offset;
-			}
-		}
-		return -1;
+		return ByteSequences.indexOf(bytes, offset, length, possibleSubsequence.bytes, possibleSubsequence.offset,
+				possibleSubsequence.length, fromIndex);
 	}
 	public int indexOf(BytesSubsequence possibleSubsequence) {
 		return indexOf(possibleSubsequence, 0);
@@ -192,19 +149,13 @@ public class BytesSubsequence implements ByteSequence, Serializable, Comparable<
 		if (length == 0) {
 			return EMPTY_BYTES;
 		}
+		BytesMetrics.record(BytesMetrics.Operation.TO_BYTE_ARRAY, length);
 		return Arrays.copyOfRange(bytes, offset, offset + length);
 	}
 
 	@Override
 	public int compareTo(ByteSequence o) {
-		int shortestLength = Math.min(length, o.length());
-		for (int i = 0; i<shortestLength; i++) {
-			int comparison = bytes[offset + i] - o.get(i);
-			if (comparison != 0) {
-				return comparison;
-			}
-		}
-		return length - o.length();
+		return ByteSequences.compare(this, o);
 	}
 	
 	@Override
@@ -215,17 +166,7 @@ public class BytesSubsequence implements ByteSequence, Serializable, Comparable<
 		if (other == null || !(other instanceof ByteSequence)) {
 			return false;
 		}
-		ByteSequence o =  (ByteSequence) other;
-		if (o.length() != length()) {
-			return false;
-		}
-		int length = length();
-		for (int i = 0; i < length; i++) {
-			if (get(i) != o.get(i)) {
-				return false;
-			}
-		}
-		return true;
+		return ByteSequences.contentEquals(this, (ByteSequence) other);
 	}
 
 	@Override
@@ -262,11 +203,76 @@ public class BytesSubsequence implements ByteSequence, Serializable, Comparable<
 		if (offset == 0 && length == this.bytes.length) {
 			return new Bytes(this.bytes, true);
 		}
-		return new Bytes(this.bytes, offset, length);
+		BytesMetrics.record(BytesMetrics.Operation.TO_BYTES, length);
+		return new Bytes(Arrays.copyOfRange(bytes, offset, offset + length), true);
 	}
 	
+	@Override
 	public ByteBuffer getByteBuffer() {
-		return ByteBuffer.wrap(bytes, offset, length).asReadOnlyBuffer();
+		return ByteBuffer.wrap(bytes, offset, length).slice().asReadOnlyBuffer();
+	}
+
+	@Override
+	public void getBytes(int index, byte[] destination, int destinationOffset, int length) {
+		ByteSequences.checkGetBytes(this, index, destination, destinationOffset, length);
+		System.arraycopy(bytes, offset + index, destination, destinationOffset, length);
+	}
+
+	@Override
+	public void copyTo(ByteBuffer destination) {
+		destination.put(bytes, offset, this.length);
+	}
+
+	@Override
+	public long retainedSize() {
+		return bytes.length;
+	}
+
+	/**
+	 * Return a sequence which does not pin excess storage. If this view uses less than the fraction of its
+	 * backing array given by {@link ByteSequences#getCompactionThreshold()}, its content is copied to an
+	 * exactly-sized array; otherwise this instance is returned. The copy is cached, so compacting the same
+	 * view again returns the same instance.
+	 * 
+	 * @return this view, or a compact copy of it
+	 */
+	public BytesSubsequence compact() {
+		return compact(ByteSequences.getCompactionThreshold());
+	}
+
+	/**
+	 * Return a sequence which does not pin excess storage, as per {@link #compact()}.
+	 * 
+	 * @param minimumUse fraction of the backing array, in the range [0, 1], below which the content is copied
+	 * @return this view, or a compact copy of it
+	 */
+	public BytesSubsequence compact(double minimumUse) {
+		if (!(minimumUse >= 0 && minimumUse <= 1)) {
+			throw new IllegalArgumentException("minimumUse");
+		}
+		if (length >= bytes.length * minimumUse) {
+			return this;
+		}
+		BytesSubsequence result = compacted;
+		if (result == null) {
+			if (length == 0) {
+				result = EMPTY;
+			}
+			else {
+				BytesMetrics.record(BytesMetrics.Operation.COMPACT, length);
+				result = new BytesSubsequence(Arrays.copyOfRange(bytes, offset, offset + length), 0, length, true);
+			}
+			compacted = result;
+		}
+		return result;
+	}
+
+	byte[] backingArray() {
+		return bytes;
+	}
+
+	int backingOffset() {
+		return offset;
 	}
 	
 	@Override
@@ -288,9 +294,17 @@ public class BytesSubsequence implements ByteSequence, Serializable, Comparable<
 			return this;
 		}
 		int concattedLength = length + this.length;
-		byte[] concattedBytes = new byte[concattedLength];
-		System.arraycopy(bytes, this.offset, concattedBytes, 0, this.length);
-		System.arraycopy(suffix, 0, concattedBytes, this.length, length);
+		Object event = EventSupport.beginCopy("BytesSubsequence.concat", concattedLength);
+		byte[] concattedBytes;
+		try {
+			concattedBytes = new byte[concattedLength];
+			System.arraycopy(bytes, this.offset, concattedBytes, 0, this.length);
+			System.arraycopy(suffix, 0, concattedBytes, this.length, length);
+		}
+		finally {
+			EventSupport.end(event);
+		}
+		BytesMetrics.record(BytesMetrics.Operation.CONCAT, concattedLength);
 		return new BytesSubsequence(concattedBytes, 0, length + this.length, true);
 	}
 
@@ -352,4 +366,17 @@ public class BytesSubsequence implements ByteSequence, Serializable, Comparable<
 		return EMPTY;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Serialize through a proxy holding only the content of this sequence.
+	 *
+	 * @return serialization proxy
+	 */
+	private Object writeReplace() {
+		return new Ser(Ser.BYTES_SUBSEQUENCE_TYPE, this);
+	}
+
+	private void readObject(ObjectInputStream stream) throws InvalidObjectException {
+		throw Ser.proxyRequired();
+	}
+
+}
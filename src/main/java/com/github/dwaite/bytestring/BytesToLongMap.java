@@ -0,0 +1,218 @@
+package com.github.dwaite.bytestring;
+
+import java.util.Objects;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Hash map from byte content to primitive `long` values, such as counters or offsets.
+ *
+ * Storage is as for {@link BytesHashMap}, with values held in a `long[]` so that neither keys nor values
+ * are boxed. As `long` has no spare value to indicate absence, a caller-chosen missing value is returned
+ * for keys which are not present.
+ *
+ * This class is not thread-safe.
+ */
+public class BytesToLongMap extends BytesKeyTable {
+	private long[] values;
+	private final long missingValue;
+
+	/**
+	 * Create an empty map
+	 * 
+	 * @param missingValue value returned by lookups for keys which are not present
+	 */
+	public BytesToLongMap(long missingValue) {
+		this(DEFAULT_CAPACITY, missingValue);
+	}
+
+	/**
+	 * Create an empty map sized to hold the given number of entries without resizing
+	 * 
+	 * @param expectedSize expected number of entries
+	 * @param missingValue value returned by lookups for keys which are not present
+	 */
+	public BytesToLongMap(int expectedSize, long missingValue) {
+		super(expectedSize);
+		this.missingValue = missingValue;
+	}
+
+	/**
+	 * @return value returned by lookups for keys which are not present
+	 */
+	public long missingValue() {
+		return missingValue;
+	}
+
+	/**
+	 * @param key key to look up
+	 * @return value for the key, or {@link #missingValue()} if the key is not present
+	 */
+	public long get(ByteSequence key) {
+		return valueAt(find(key));
+	}
+
+	/**
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @return value for the key, or {@link #missingValue()} if the key is not present
+	 */
+	public long get(byte[] key, int offset, int length) {
+		return valueAt(find(key, offset, length));
+	}
+
+	/**
+	 * @param key key to look up
+	 * @return `true` if the key is present
+	 */
+	public boolean containsKey(ByteSequence key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @return `true` if the key is present
+	 */
+	public boolean containsKey(byte[] key, int offset, int length) {
+		return find(key, offset, length) >= 0;
+	}
+
+	/**
+	 * Associate a value with a key. The bytes of a new key are copied into the map.
+	 * 
+	 * @param key key to associate with
+	 * @param value value
+	 * @return previous value for the key, or {@link #missingValue()} if the key was not present
+	 */
+	public long put(ByteSequence key, long value) {
+		return replace(findOrInsert(key), value);
+	}
+
+	/**
+	 * Associate a value with a key. The bytes of a new key are copied into the map.
+	 * 
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @param value value
+	 * @return previous value for the key, or {@link #missingValue()} if the key was not present
+	 */
+	public long put(byte[] key, int offset, int length, long value) {
+		return replace(findOrInsert(key, offset, length), value);
+	}
+
+	/**
+	 * Add to the value for a key, treating a key which is not present as having a value of zero.
+	 * 
+	 * @param key key to update
+	 * @param delta amount to add
+	 * @return updated value
+	 */
+	public long addAndGet(ByteSequence key, long delta) {
+		return add(findOrInsert(key), delta);
+	}
+
+	/**
+	 * Add to the value for a key, treating a key which is not present as having a value of zero.
+	 * 
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @param delta amount to add
+	 * @return updated value
+	 */
+	public long addAndGet(byte[] key, int offset, int length, long delta) {
+		return add(findOrInsert(key, offset, length), delta);
+	}
+
+	/**
+	 * @param key key to remove
+	 * @return value for the removed key, or {@link #missingValue()} if the key was not present
+	 */
+	public long remove(ByteSequence key) {
+		return removeSlot(find(key));
+	}
+
+	/**
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @return value for the removed key, or {@link #missingValue()} if the key was not present
+	 */
+	public long remove(byte[] key, int offset, int length) {
+		return removeSlot(find(key, offset, length));
+	}
+
+	/**
+	 * Pass each entry to the given action. Keys are immutable views over the internal key storage, and
+	 * remain valid after the entry is removed.
+	 * 
+	 * @param action action to perform for each entry
+	 */
+	public void forEach(ObjLongConsumer<? super ByteSequence> action) {
+		Objects.requireNonNull(action);
+		int capacity = capacity();
+		for (int slot = 0; slot < capacity; slot++) {
+			if (isLive(slot)) {
+				action.accept(keyAt(slot), values[slot]);
+			}
+		}
+	}
+
+	private long valueAt(int slot) {
+		return slot < 0 ? missingValue : values[slot];
+	}
+
+	private long replace(int slot, long value) {
+		if (slot < 0) {
+			values[-(slot + 1)] = value;
+			return missingValue;
+		}
+		long previous = values[slot];
+		values[slot] = value;
+		return previous;
+	}
+
+	private long add(int slot, long delta) {
+		if (slot < 0) {
+			return values[-(slot + 1)] = delta;
+		}
+		return values[slot] += delta;
+	}
+
+	private long removeSlot(int slot) {
+		if (slot < 0) {
+			return missingValue;
+		}
+		long previous = values[slot];
+		removeAt(slot);
+		return previous;
+	}
+
+	@Override
+	int valueBytesPerSlot() {
+		return Long.BYTES;
+	}
+
+	@Override
+	void allocateValues(int capacity) {
+		values = new long[capacity];
+	}
+
+	@Override
+	Object detachValues() {
+		return values;
+	}
+
+	@Override
+	void transferValue(Object oldValues, int oldSlot, int newSlot) {
+		values[newSlot] = ((long[]) oldValues)[oldSlot];
+	}
+
+	@Override
+	void clearValue(int slot) {
+		values[slot] = 0;
+	}
+}
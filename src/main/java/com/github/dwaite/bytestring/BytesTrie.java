@@ -0,0 +1,795 @@
+package com.github.dwaite.bytestring;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Map from byte sequence keys to values, organized as an adaptive radix tree.
+ *
+ * Each inner node branches on a single byte of the key, and is sized to the number of children it has
+ * (4, 16, 48 or 256), with runs of bytes that do not branch stored once as a compressed path. Compared to a
+ * `TreeMap<Bytes, V>` this avoids a comparison per level and per-entry tree nodes, and supports prefix
+ * queries directly: the longest key which is a prefix of a given sequence, and all keys starting with a
+ * given prefix.
+ *
+ * Iteration is in the order of {@link ByteSequence#compareTo(ByteSequence)}. Keys are copied on insertion,
+ * and are presented as {@link Bytes} views of that copy. Null values are not permitted. This class is not
+ * thread-safe.
+ *
+ * @param <V> type of values
+ */
+public class BytesTrie<V> {
+	private Node root;
+	private int size;
+
+	/**
+	 * @return number of keys present
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return `true` if no keys are present
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Remove all keys
+	 */
+	public void clear() {
+		root = null;
+		size = 0;
+	}
+
+	/**
+	 * @param key key to look up
+	 * @return value for the key, or `null` if the key is not present
+	 */
+	public V get(ByteSequence key) {
+		byte[] array = ByteSequences.readableArrayOf(Objects.requireNonNull(key));
+		if (array != null) {
+			return get(array, ByteSequences.readableArrayOffsetOf(key), key.length());
+		}
+		byte[] copy = copyOf(key);
+		return get(copy, 0, copy.length);
+	}
+
+	/**
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @return value for the key, or `null` if the key is not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(byte[] key, int offset, int length) {
+		checkKey(key, offset, length);
+		Node node = root;
+		int depth = 0;
+		while (node != null) {
+			if (node instanceof Leaf) {
+				Leaf leaf = (Leaf) node;
+				return leaf.matches(key, offset, length) ? (V) leaf.value : null;
+			}
+			Inner inner = (Inner) node;
+			if (inner.prefixMismatch(key, offset + depth, length - depth) != inner.prefix.length) {
+				return null;
+			}
+			depth += inner.prefix.length;
+			if (depth == length) {
+				return inner.terminal != null ? (V) inner.terminal.value : null;
+			}
+			node = inner.child(key[offset + depth] & 0xff);
+			depth++;
+		}
+		return null;
+	}
+
+	/**
+	 * @param key key to look up
+	 * @return `true` if the key is present
+	 */
+	public boolean containsKey(ByteSequence key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Associate a value with a key. The bytes of a new key are copied into the trie.
+	 *
+	 * @param key key to associate with
+	 * @param value non-null value
+	 * @return previous value for the key, or `null` if the key was not present
+	 */
+	public V put(ByteSequence key, V value) {
+		byte[] array = ByteSequences.readableArrayOf(Objects.requireNonNull(key));
+		if (array != null) {
+			return put(array, ByteSequences.readableArrayOffsetOf(key), key.length(), value);
+		}
+		byte[] copy = copyOf(key);
+		return put(copy, 0, copy.length, value);
+	}
+
+	/**
+	 * Associate a value with a key. The bytes of a new key are copied into the trie.
+	 *
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @param value non-null value
+	 * @return previous value for the key, or `null` if the key was not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(byte[] key, int offset, int length, V value) {
+		checkKey(key, offset, length);
+		Objects.requireNonNull(value);
+		Object[] previous = new Object[1];
+		root = insert(root, key, offset, length, 0, value, previous);
+		if (previous[0] == null) {
+			size++;
+		}
+		return (V) previous[0];
+	}
+
+	/**
+	 * @param key key to remove
+	 * @return value for the removed key, or `null` if the key was not present
+	 */
+	public V remove(ByteSequence key) {
+		byte[] array = ByteSequences.readableArrayOf(Objects.requireNonNull(key));
+		if (array != null) {
+			return remove(array, ByteSequences.readableArrayOffsetOf(key), key.length());
+		}
+		byte[] copy = copyOf(key);
+		return remove(copy, 0, copy.length);
+	}
+
+	/**
+	 * @param key array containing the key
+	 * @param offset offset of the key within the array
+	 * @param length length of the key
+	 * @return value for the removed key, or `null` if the key was not present
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(byte[] key, int offset, int length) {
+		checkKey(key, offset, length);
+		Object[] removed = new Object[1];
+		root = delete(root, key, offset, length, 0, removed);
+		if (removed[0] != null) {
+			size--;
+		}
+		return (V) removed[0];
+	}
+
+	/**
+	 * Find the longest key which is a prefix of (or equal to) the given sequence, such as for routing
+	 * table lookups.
+	 *
+	 * @param sequence sequence to match against
+	 * @return entry for the longest matching key, or `null` if no key is a prefix of the sequence
+	 */
+	public Map.Entry<Bytes, V> longestPrefixOf(ByteSequence sequence) {
+		byte[] array = ByteSequences.readableArrayOf(Objects.requireNonNull(sequence));
+		if (array != null) {
+			return longestPrefixOf(array, ByteSequences.readableArrayOffsetOf(sequence), sequence.length());
+		}
+		byte[] copy = copyOf(sequence);
+		return longestPrefixOf(copy, 0, copy.length);
+	}
+
+	/**
+	 * Find the longest key which is a prefix of (or equal to) the given range of an array.
+	 *
+	 * @param sequence array containing the sequence to match against
+	 * @param offset offset of the sequence within the array
+	 * @param length length of the sequence
+	 * @return entry for the longest matching key, or `null` if no key is a prefix of the sequence
+	 */
+	public Map.Entry<Bytes, V> longestPrefixOf(byte[] sequence, int offset, int length) {
+		checkKey(sequence, offset, length);
+		Leaf best = null;
+		Node node = root;
+		int depth = 0;
+		while (node != null) {
+			if (node instanceof Leaf) {
+				Leaf leaf = (Leaf) node;
+				if (leaf.isPrefixOf(sequence, offset, length)) {
+					best = leaf;
+				}
+				break;
+			}
+			Inner inner = (Inner) node;
+			if (inner.prefixMismatch(sequence, offset + depth, length - depth) != inner.prefix.length) {
+				break;
+			}
+			depth += inner.prefix.length;
+			if (inner.terminal != null) {
+				best = inner.terminal;
+			}
+			if (depth == length) {
+				break;
+			}
+			node = inner.child(sequence[offset + depth] & 0xff);
+			depth++;
+		}
+		return best == null ? null : entry(best);
+	}
+
+	/**
+	 * Pass each entry whose key starts with the given prefix to the given action, in key order.
+	 *
+	 * @param prefix prefix to match
+	 * @param action action to perform for each entry
+	 */
+	public void forEachWithPrefix(ByteSequence prefix, BiConsumer<? super Bytes, ? super V> action) {
+		Objects.requireNonNull(action);
+		byte[] array = ByteSequences.readableArrayOf(Objects.requireNonNull(prefix));
+		int offset = 0;
+		if (array != null) {
+			offset = ByteSequences.readableArrayOffsetOf(prefix);
+		}
+		else {
+			array = copyOf(prefix);
+		}
+		int length = prefix.length();
+		Node node = root;
+		int depth = 0;
+		while (node != null) {
+			if (node instanceof Leaf) {
+				Leaf leaf = (Leaf) node;
+				if (leaf.key.length >= length && leaf.matchesRange(array, offset, depth, length - depth)) {
+					visit(leaf, action);
+				}
+				return;
+			}
+			Inner inner = (Inner) node;
+			int matched = inner.prefixMismatch(array, offset + depth, length - depth);
+			if (depth + matched == length) {
+				// the prefix ends within or at the end of this node's compressed path
+				visit(inner, action);
+				return;
+			}
+			if (matched != inner.prefix.length) {
+				return;
+			}
+			depth += inner.prefix.length;
+			node = inner.child(array[offset + depth] & 0xff);
+			depth++;
+		}
+	}
+
+	/**
+	 * Pass each entry to the given action, in key order.
+	 *
+	 * @param action action to perform for each entry
+	 */
+	public void forEach(BiConsumer<? super Bytes, ? super V> action) {
+		Objects.requireNonNull(action);
+		if (root != null) {
+			visit(root, action);
+		}
+	}
+
+	/**
+	 * Estimate the memory retained by this trie: its nodes and key copies, but not any value objects
+	 * referenced by it.
+	 *
+	 * @return approximate size in bytes
+	 */
+	public long memoryFootprint() {
+		return 16L + (root == null ? 0 : root.footprint());
+	}
+
+	@SuppressWarnings("unchecked")
+	private void visit(Node node, BiConsumer<? super Bytes, ? super V> action) {
+		if (node instanceof Leaf) {
+			Leaf leaf = (Leaf) node;
+			action.accept(new Bytes(leaf.key, true), (V) leaf.value);
+			return;
+		}
+		Inner inner = (Inner) node;
+		if (inner.terminal != null) {
+			visit(inner.terminal, action);
+		}
+		for (int b = inner.nextChild(-1); b >= 0; b = inner.nextChild(b)) {
+			visit(inner.child(b), action);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map.Entry<Bytes, V> entry(Leaf leaf) {
+		return new AbstractMap.SimpleImmutableEntry<>(new Bytes(leaf.key, true), (V) leaf.value);
+	}
+
+	private static Node insert(Node node, byte[] key, int offset, int length, int depth, Object value,
+			Object[] previous) {
+		if (node == null) {
+			return new Leaf(Arrays.copyOfRange(key, offset, offset + length), value);
+		}
+		if (node instanceof Leaf) {
+			Leaf leaf = (Leaf) node;
+			if (leaf.matches(key, offset, length)) {
+				previous[0] = leaf.value;
+				leaf.value = value;
+				return leaf;
+			}
+			int common = 0;
+			int limit = Math.min(leaf.key.length, length) - depth;
+			while (common < limit && leaf.key[depth + common] == key[offset + depth + common]) {
+				common++;
+			}
+			Inner split = new Node4(Arrays.copyOfRange(leaf.key, depth, depth + common));
+			int splitDepth = depth + common;
+			split.attach(leaf.key, splitDepth, leaf);
+			split.attach(key, offset, length, splitDepth, new Leaf(Arrays.copyOfRange(key, offset, offset + length), value));
+			return split;
+		}
+		Inner inner = (Inner) node;
+		int matched = inner.prefixMismatch(key, offset + depth, length - depth);
+		if (matched != inner.prefix.length) {
+			// the key diverges within the compressed path, so split the path at the divergence
+			Inner split = new Node4(Arrays.copyOf(inner.prefix, matched));
+			int branch = inner.prefix[matched] & 0xff;
+			inner.prefix = Arrays.copyOfRange(inner.prefix, matched + 1, inner.prefix.length);
+			split.addChild(branch, inner);
+			split.attach(key, offset, length, depth + matched,
+					new Leaf(Arrays.copyOfRange(key, offset, offset + length), value));
+			return split;
+		}
+		depth += matched;
+		if (depth == length) {
+			if (inner.terminal != null) {
+				previous[0] = inner.terminal.value;
+				inner.terminal.value = value;
+			}
+			else {
+				inner.terminal = new Leaf(Arrays.copyOfRange(key, offset, offset + length), value);
+			}
+			return inner;
+		}
+		int b = key[offset + depth] & 0xff;
+		Node child = inner.child(b);
+		if (child != null) {
+			Node replacement = insert(child, key, offset, length, depth + 1, value, previous);
+			if (replacement != child) {
+				inner.replaceChild(b, replacement);
+			}
+			return inner;
+		}
+		if (inner.isFull()) {
+			inner = inner.grow();
+		}
+		inner.addChild(b, new Leaf(Arrays.copyOfRange(key, offset, offset + length), value));
+		return inner;
+	}
+
+	private static Node delete(Node node, byte[] key, int offset, int length, int depth, Object[] removed) {
+		if (node == null) {
+			return null;
+		}
+		if (node instanceof Leaf) {
+			Leaf leaf = (Leaf) node;
+			if (leaf.matches(key, offset, length)) {
+				removed[0] = leaf.value;
+				return null;
+			}
+			return leaf;
+		}
+		Inner inner = (Inner) node;
+		if (inner.prefixMismatch(key, offset + depth, length - depth) != inner.prefix.length) {
+			return inner;
+		}
+		depth += inner.prefix.length;
+		if (depth == length) {
+			if (inner.terminal == null) {
+				return inner;
+			}
+			removed[0] = inner.terminal.value;
+			inner.terminal = null;
+			return inner.compact();
+		}
+		int b = key[offset + depth] & 0xff;
+		Node child = inner.child(b);
+		if (child == null) {
+			return inner;
+		}
+		Node replacement = delete(child, key, offset, length, depth + 1, removed);
+		if (replacement == child) {
+			return inner;
+		}
+		if (replacement == null) {
+			inner.removeChild(b);
+		}
+		else {
+			inner.replaceChild(b, replacement);
+		}
+		return inner.compact();
+	}
+
+	private static byte[] copyOf(ByteSequence sequence) {
+		byte[] copy = new byte[sequence.length()];
+		sequence.getByteBuffer().get(copy);
+		return copy;
+	}
+
+	private static void checkKey(byte[] key, int offset, int length) {
+		Objects.requireNonNull(key);
+		if (offset < 0 || length < 0 || offset > key.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	private abstract static class Node {
+		abstract long footprint();
+	}
+
+	private static final class Leaf extends Node {
+		final byte[] key;
+		Object value;
+
+		Leaf(byte[] key, Object value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		boolean matches(byte[] other, int offset, int length) {
+			return key.length == length && matchesRange(other, offset, 0, length);
+		}
+
+		boolean isPrefixOf(byte[] other, int offset, int length) {
+			return key.length <= length && matchesRange(other, offset, 0, key.length);
+		}
+
+		// compare key[from, from + count) against other[offset + from, ...)
+		boolean matchesRange(byte[] other, int offset, int from, int count) {
+			for (int i = from; i < from + count; i++) {
+				if (key[i] != other[offset + i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		long footprint() {
+			return 24L + 16L + key.length;
+		}
+	}
+
+	private abstract static class Inner extends Node {
+		// bytes shared by every key below this node, after the byte which selected it in the parent
+		byte[] prefix;
+		// entry for the key which ends at this node, after the prefix
+		Leaf terminal;
+		int count;
+
+		Inner(byte[] prefix) {
+			this.prefix = prefix;
+		}
+
+		// number of bytes of the prefix which match key[offset, offset + length)
+		int prefixMismatch(byte[] key, int offset, int length) {
+			int limit = Math.min(prefix.length, length);
+			for (int i = 0; i < limit; i++) {
+				if (prefix[i] != key[offset + i]) {
+					return i;
+				}
+			}
+			return limit;
+		}
+
+		// place a node for a key which has been matched up to `depth`, as the terminal or as a child
+		void attach(byte[] key, int depth, Leaf leaf) {
+			attach(key, 0, key.length, depth, leaf);
+		}
+
+		void attach(byte[] key, int offset, int length, int depth, Leaf leaf) {
+			if (depth == length) {
+				terminal = leaf;
+			}
+			else {
+				addChild(key[offset + depth] & 0xff, leaf);
+			}
+		}
+
+		// remove this node if it no longer branches, or replace it with a smaller node type
+		Node compact() {
+			if (count == 0) {
+				return terminal;
+			}
+			if (count == 1 && terminal == null) {
+				int b = nextChild(-1);
+				Node child = child(b);
+				if (child instanceof Inner) {
+					Inner inner = (Inner) child;
+					byte[] merged = Arrays.copyOf(prefix, prefix.length + 1 + inner.prefix.length);
+					merged[prefix.length] = (byte) b;
+					System.arraycopy(inner.prefix, 0, merged, prefix.length + 1, inner.prefix.length);
+					inner.prefix = merged;
+				}
+				return child;
+			}
+			return shrink();
+		}
+
+		void copyInto(Inner other) {
+			other.terminal = terminal;
+			for (int b = nextChild(-1); b >= 0; b = nextChild(b)) {
+				other.addChild(b, child(b));
+			}
+		}
+
+		long baseFootprint() {
+			return 16L + prefix.length + (terminal == null ? 0 : terminal.footprint());
+		}
+
+		long childrenFootprint() {
+			long total = 0;
+			for (int b = nextChild(-1); b >= 0; b = nextChild(b)) {
+				total += child(b).footprint();
+			}
+			return total;
+		}
+
+		abstract Node child(int b);
+
+		// smallest child byte greater than `after`, or -1
+		abstract int nextChild(int after);
+
+		abstract void addChild(int b, Node child);
+
+		abstract void replaceChild(int b, Node child);
+
+		abstract void removeChild(int b);
+
+		abstract boolean isFull();
+
+		abstract Inner grow();
+
+		abstract Inner shrink();
+	}
+
+	// up to 4 (or 16) children, with keys kept sorted for ordered iteration
+	private static class Node4 extends Inner {
+		byte[] keys;
+		Node[] children;
+
+		Node4(byte[] prefix) {
+			this(prefix, 4);
+		}
+
+		Node4(byte[] prefix, int capacity) {
+			super(prefix);
+			keys = new byte[capacity];
+			children = new Node[capacity];
+		}
+
+		@Override
+		Node child(int b) {
+			for (int i = 0; i < count; i++) {
+				if ((keys[i] & 0xff) == b) {
+					return children[i];
+				}
+			}
+			return null;
+		}
+
+		@Override
+		int nextChild(int after) {
+			for (int i = 0; i < count; i++) {
+				if ((keys[i] & 0xff) > after) {
+					return keys[i] & 0xff;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		void addChild(int b, Node child) {
+			int i = count;
+			while (i > 0 && (keys[i - 1] & 0xff) > b) {
+				keys[i] = keys[i - 1];
+				children[i] = children[i - 1];
+				i--;
+			}
+			keys[i] = (byte) b;
+			children[i] = child;
+			count++;
+		}
+
+		@Override
+		void replaceChild(int b, Node child) {
+			for (int i = 0; i < count; i++) {
+				if ((keys[i] & 0xff) == b) {
+					children[i] = child;
+					return;
+				}
+			}
+		}
+
+		@Override
+		void removeChild(int b) {
+			for (int i = 0; i < count; i++) {
+				if ((keys[i] & 0xff) == b) {
+					System.arraycopy(keys, i + 1, keys, i, count - i - 1);
+					System.arraycopy(children, i + 1, children, i, count - i - 1);
+					count--;
+					children[count] = null;
+					return;
+				}
+			}
+		}
+
+		@Override
+		boolean isFull() {
+			return count == keys.length;
+		}
+
+		@Override
+		Inner grow() {
+			Inner grown = keys.length == 4 ? new Node4(prefix, 16) : new Node48(prefix);
+			copyInto(grown);
+			return grown;
+		}
+
+		@Override
+		Inner shrink() {
+			if (keys.length == 16 && count <= 3) {
+				Inner shrunk = new Node4(prefix);
+				copyInto(shrunk);
+				return shrunk;
+			}
+			return this;
+		}
+
+		@Override
+		long footprint() {
+			return baseFootprint() + 32L + keys.length * 5L + childrenFootprint();
+		}
+	}
+
+	private static final class Node48 extends Inner {
+		// child slot + 1 for each byte value, or 0 for no child
+		final byte[] index = new byte[256];
+		final Node[] children = new Node[48];
+
+		Node48(byte[] prefix) {
+			super(prefix);
+		}
+
+		@Override
+		Node child(int b) {
+			int slot = index[b];
+			return slot == 0 ? null : children[slot - 1];
+		}
+
+		@Override
+		int nextChild(int after) {
+			for (int b = after + 1; b < 256; b++) {
+				if (index[b] != 0) {
+					return b;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		void addChild(int b, Node child) {
+			int slot = 0;
+			while (children[slot] != null) {
+				slot++;
+			}
+			children[slot] = child;
+			index[b] = (byte) (slot + 1);
+			count++;
+		}
+
+		@Override
+		void replaceChild(int b, Node child) {
+			children[index[b] - 1] = child;
+		}
+
+		@Override
+		void removeChild(int b) {
+			children[index[b] - 1] = null;
+			index[b] = 0;
+			count--;
+		}
+
+		@Override
+		boolean isFull() {
+			return count == 48;
+		}
+
+		@Override
+		Inner grow() {
+			Inner grown = new Node256(prefix);
+			copyInto(grown);
+			return grown;
+		}
+
+		@Override
+		Inner shrink() {
+			if (count <= 12) {
+				Inner shrunk = new Node4(prefix, 16);
+				copyInto(shrunk);
+				return shrunk;
+			}
+			return this;
+		}
+
+		@Override
+		long footprint() {
+			return baseFootprint() + 16L + 256L + 16L + 48 * 4L + childrenFootprint();
+		}
+	}
+
+	private static final class Node256 extends Inner {
+		final Node[] children = new Node[256];
+
+		Node256(byte[] prefix) {
+			super(prefix);
+		}
+
+		@Override
+		Node child(int b) {
+			return children[b];
+		}
+
+		@Override
+		int nextChild(int after) {
+			for (int b = after + 1; b < 256; b++) {
+				if (children[b] != null) {
+					return b;
+				}
+			}
+			return -1;
+		}
+
+		@Override
+		void addChild(int b, Node child) {
+			children[b] = child;
+			count++;
+		}
+
+		@Override
+		void replaceChild(int b, Node child) {
+			children[b] = child;
+		}
+
+		@Override
+		void removeChild(int b) {
+			children[b] = null;
+			count--;
+		}
+
+		@Override
+		boolean isFull() {
+			return false;
+		}
+
+		@Override
+		Inner grow() {
+			return this;
+		}
+
+		@Override
+		Inner shrink() {
+			if (count <= 37) {
+				Inner shrunk = new Node48(prefix);
+				copyInto(shrunk);
+				return shrunk;
+			}
+			return this;
+		}
+
+		@Override
+		long footprint() {
+			return baseFootprint() + 16L + 256 * 4L + childrenFootprint();
+		}
+	}
+}
@@ -0,0 +1,925 @@
+package com.github.dwaite.bytestring;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.github.dwaite.bytestring.impl.ZipSupport;
+
+/**
+ * Deflate based compression and decompression of byte sequences.
+ *
+ * Input is read directly from the backing storage of the sequence where possible rather than through an
+ * intermediate stream, and output is written either into a new {@link Bytes} instance or into an existing
+ * {@link MutableByteSequence}. On Java 11 and later, direct buffers are passed to the zip library without
+ * being copied to the heap.
+ *
+ * {@link Deflater} and {@link Inflater} instances hold native memory, so they are kept in small shared
+ * pools and reused across calls rather than created per message.
+ *
+ * For data which arrives in pieces, {@link #compressor(Format, int)} and {@link #decompressor(Format)}
+ * return streaming variants which accept a chunk at a time.
+ */
+public final class Compression {
+
+	/**
+	 * Container formats for deflate compressed data
+	 */
+	public enum Format {
+		/** Raw deflate data (RFC 1951), without any header or trailer */
+		DEFLATE(true),
+		/** Zlib wrapped deflate data (RFC 1950), the default format of {@link Deflater} */
+		ZLIB(false),
+		/** A single gzip member (RFC 1952), as written by {@link java.util.zip.GZIPOutputStream} */
+		GZIP(true);
+
+		private final boolean nowrap;
+
+		private Format(boolean nowrap) {
+			this.nowrap = nowrap;
+		}
+	}
+
+	private static final int CHUNK_SIZE = 8192;
+	private static final int POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+	// largest initial output capacity taken from the input when decompressing
+	private static final int MAX_SIZE_HINT = 1 << 20;
+
+	private static final byte[] GZIP_HEADER = {
+			0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+	};
+	private static final int GZIP_TRAILER_LENGTH = 8;
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private static final Pool<Deflater> WRAPPED_DEFLATERS = new Pool<>(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, false));
+	private static final Pool<Deflater> RAW_DEFLATERS = new Pool<>(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+	private static final Pool<Inflater> WRAPPED_INFLATERS = new Pool<>(() -> new Inflater(false));
+	private static final Pool<Inflater> RAW_INFLATERS = new Pool<>(() -> new Inflater(true));
+
+	private Compression() {
+	}
+
+	/**
+	 * Compress a sequence at the default compression level.
+	 *
+	 * @param input data to compress
+	 * @param format container format to produce
+	 * @return new Bytes instance holding the compressed data
+	 */
+	public static Bytes compress(ByteSequence input, Format format) {
+		return compress(input, format, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Compress a sequence.
+	 *
+	 * @param input data to compress
+	 * @param format container format to produce
+	 * @param level compression level from 0-9, or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @return new Bytes instance holding the compressed data
+	 */
+	public static Bytes compress(ByteSequence input, Format format, int level) {
+		Objects.requireNonNull(input);
+		Objects.requireNonNull(format);
+		Output output = Output.growable(Math.max(64, input.length() / 2 + 64));
+		deflate(input, format, level, output);
+		return output.toBytes();
+	}
+
+	/**
+	 * Compress a sequence into existing storage.
+	 *
+	 * @param input data to compress
+	 * @param format container format to produce
+	 * @param level compression level from 0-9, or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @param output sequence to write the compressed data into
+	 * @param offset index within `output` to start writing at
+	 * @return number of bytes written
+	 * @throws IndexOutOfBoundsException if `offset` is invalid, or the compressed data does not fit within
+	 * `output`. In the latter case the content of `output` after `offset` is undefined.
+	 */
+	public static int compress(ByteSequence input, Format format, int level, MutableByteSequence output, int offset)
+			throws IndexOutOfBoundsException {
+		Objects.requireNonNull(input);
+		Objects.requireNonNull(format);
+		Output direct = Output.of(output, offset);
+		if (direct != null) {
+			deflate(input, format, level, direct);
+			return direct.written();
+		}
+		Output buffered = Output.growable(Math.max(64, input.length() / 2 + 64));
+		deflate(input, format, level, buffered);
+		return buffered.copyTo(output, offset);
+	}
+
+	/**
+	 * Decompress a sequence.
+	 *
+	 * @param input compressed data
+	 * @param format container format of the compressed data
+	 * @return new Bytes instance holding the decompressed data
+	 * @throws DataFormatException if the compressed data is corrupt or truncated
+	 */
+	public static Bytes decompress(ByteSequence input, Format format) throws DataFormatException {
+		Objects.requireNonNull(input);
+		Objects.requireNonNull(format);
+		Output output = Output.growable(decompressedSizeHint(input, format));
+		inflate(input, format, output);
+		return output.toBytes();
+	}
+
+	/**
+	 * Decompress a sequence into existing storage.
+	 *
+	 * @param input compressed data
+	 * @param format container format of the compressed data
+	 * @param output sequence to write the decompressed data into
+	 * @param offset index within `output` to start writing at
+	 * @return number of bytes written
+	 * @throws DataFormatException if the compressed data is corrupt or truncated
+	 * @throws IndexOutOfBoundsException if `offset` is invalid, or the decompressed data does not fit within
+	 * `output`. In the latter case the content of `output` after `offset` is undefined.
+	 */
+	public static int decompress(ByteSequence input, Format format, MutableByteSequence output, int offset)
+			throws DataFormatException, IndexOutOfBoundsException {
+		Objects.requireNonNull(input);
+		Objects.requireNonNull(format);
+		Output direct = Output.of(output, offset);
+		if (direct != null) {
+			inflate(input, format, direct);
+			return direct.written();
+		}
+		Output buffered = Output.growable(decompressedSizeHint(input, format));
+		inflate(input, format, buffered);
+		return buffered.copyTo(output, offset);
+	}
+
+	/**
+	 * Create a streaming compressor, which emits compressed output in chunks of up to 8KiB.
+	 *
+	 * @param format container format to produce
+	 * @param level compression level from 0-9, or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @return new compressor, which should be closed after use to return its resources to the pool
+	 */
+	public static Compressor compressor(Format format, int level) {
+		return new Compressor(format, level);
+	}
+
+	/**
+	 * Create a streaming decompressor.
+	 *
+	 * @param format container format of the compressed data
+	 * @return new decompressor, which should be closed after use to return its resources to the pool
+	 */
+	public static Decompressor decompressor(Format format) {
+		return new Decompressor(format);
+	}
+
+	/**
+	 * Compresses a stream of chunks. Each chunk passed to {@link #update(ByteSequence, Consumer)} is
+	 * consumed before the method returns, so callers may reuse their input storage. Compressed output is
+	 * delivered to the supplied sink as new {@link Bytes} instances.
+	 *
+	 * Instances are not thread-safe.
+	 */
+	public static final class Compressor implements AutoCloseable {
+		private final Format format;
+		private final CRC32 crc;
+		private Deflater deflater;
+		private long totalIn;
+		private byte[] buffer = new byte[CHUNK_SIZE];
+		private int position;
+
+		private Compressor(Format format, int level) {
+			this.format = Objects.requireNonNull(format);
+			this.deflater = acquireDeflater(format, level);
+			if (format == Format.GZIP) {
+				crc = new CRC32();
+				System.arraycopy(GZIP_HEADER, 0, buffer, 0, GZIP_HEADER.length);
+				position = GZIP_HEADER.length;
+			}
+			else {
+				crc = null;
+			}
+		}
+
+		/**
+		 * Compress a chunk of input. Only completely filled output chunks are emitted.
+		 *
+		 * @param chunk input data
+		 * @param sink receiver of compressed output
+		 * @return this instance
+		 * @throws IllegalStateException if the compressor has been finished or closed
+		 */
+		public Compressor update(ByteSequence chunk, Consumer<? super Bytes> sink) {
+			Objects.requireNonNull(chunk);
+			Objects.requireNonNull(sink);
+			assertOpen();
+			if (crc != null) {
+				chunk.checksum(crc);
+			}
+			totalIn += chunk.length();
+			Input input = new Input(chunk, 0);
+			while (input.hasRemaining()) {
+				input.feed(deflater);
+				while (!deflater.needsInput()) {
+					deflate(Deflater.NO_FLUSH, sink);
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Flush all pending output, so that the data compressed so far can be fully decompressed by the
+		 * receiver. Flushing frequently reduces the compression ratio.
+		 *
+		 * @param sink receiver of compressed output
+		 * @return this instance
+		 * @throws IllegalStateException if the compressor has been finished or closed
+		 */
+		public Compressor flush(Consumer<? super Bytes> sink) {
+			Objects.requireNonNull(sink);
+			assertOpen();
+			while (deflate(Deflater.SYNC_FLUSH, sink)) {
+				// output filled a whole chunk, there may be more pending
+			}
+			emitPartial(sink);
+			return this;
+		}
+
+		/**
+		 * Complete the compressed stream, emitting all remaining output, and return the deflater to the pool.
+		 *
+		 * @param sink receiver of compressed output
+		 * @throws IllegalStateException if the compressor has been finished or closed
+		 */
+		public void finish(Consumer<? super Bytes> sink) {
+			Objects.requireNonNull(sink);
+			assertOpen();
+			deflater.finish();
+			while (!deflater.finished()) {
+				deflate(Deflater.NO_FLUSH, sink);
+			}
+			if (crc != null) {
+				writeIntLE((int) crc.getValue(), sink);
+				writeIntLE((int) totalIn, sink);
+			}
+			emitPartial(sink);
+			close();
+		}
+
+		/**
+		 * Return the deflater to the pool. Any output not yet emitted is discarded.
+		 */
+		@Override
+		public void close() {
+			if (deflater != null) {
+				releaseDeflater(format, deflater);
+				deflater = null;
+			}
+		}
+
+		private void assertOpen() {
+			if (deflater == null) {
+				throw new IllegalStateException("closed");
+			}
+		}
+
+		// returns true if the output chunk was filled and emitted
+		private boolean deflate(int flush, Consumer<? super Bytes> sink) {
+			position += deflater.deflate(buffer, position, buffer.length - position, flush);
+			if (position < buffer.length) {
+				return false;
+			}
+			sink.accept(new Bytes(buffer, true));
+			buffer = new byte[CHUNK_SIZE];
+			position = 0;
+			return true;
+		}
+
+		private void writeIntLE(int value, Consumer<? super Bytes> sink) {
+			for (int i = 0; i < Integer.BYTES; i++) {
+				if (position == buffer.length) {
+					sink.accept(new Bytes(buffer, true));
+					buffer = new byte[CHUNK_SIZE];
+					position = 0;
+				}
+				buffer[position++] = (byte) (value >>> (8 * i));
+			}
+		}
+
+		private void emitPartial(Consumer<? super Bytes> sink) {
+			if (position > 0) {
+				sink.accept(new Bytes(buffer, 0, position));
+				position = 0;
+			}
+		}
+	}
+
+	/**
+	 * Decompresses a stream of chunks. Each chunk passed to {@link #update(ByteSequence, Consumer)} is
+	 * consumed before the method returns, and all output which can be produced from it is delivered to the
+	 * supplied sink as new {@link Bytes} instances. Data following the end of the compressed stream is
+	 * ignored; in particular only the first member of a multi-member gzip file is decompressed.
+	 *
+	 * Instances are not thread-safe.
+	 */
+	public static final class Decompressor implements AutoCloseable {
+		private static final int HEADER = 0;
+		private static final int BODY = 1;
+		private static final int TRAILER = 2;
+		private static final int FINISHED = 3;
+
+		private final Format format;
+		private final CRC32 crc;
+		private Inflater inflater;
+		private int state;
+		private long totalOut;
+		private byte[] pending = new byte[0];
+		private int pendingLength;
+		private byte[] buffer = new byte[CHUNK_SIZE];
+		private int position;
+
+		private Decompressor(Format format) {
+			this.format = Objects.requireNonNull(format);
+			this.inflater = acquireInflater(format);
+			if (format == Format.GZIP) {
+				crc = new CRC32();
+				state = HEADER;
+			}
+			else {
+				crc = null;
+				state = BODY;
+			}
+		}
+
+		/**
+		 * Decompress a chunk of input.
+		 *
+		 * @param chunk compressed input data
+		 * @param sink receiver of decompressed output
+		 * @return this instance
+		 * @throws DataFormatException if the compressed data is corrupt
+		 * @throws IllegalStateException if the decompressor has been closed
+		 */
+		public Decompressor update(ByteSequence chunk, Consumer<? super Bytes> sink) throws DataFormatException {
+			Objects.requireNonNull(chunk);
+			Objects.requireNonNull(sink);
+			if (inflater == null && state != FINISHED) {
+				throw new IllegalStateException("closed");
+			}
+			int index = 0;
+			int length = chunk.length();
+			while (index < length && state != FINISHED) {
+				if (state == HEADER) {
+					index = readHeader(chunk, index);
+				}
+				else if (state == BODY) {
+					index = inflate(chunk, index, sink);
+				}
+				else {
+					index = readTrailer(chunk, index);
+				}
+			}
+			if (position > 0) {
+				sink.accept(new Bytes(buffer, 0, position));
+				position = 0;
+			}
+			if (state == FINISHED) {
+				close();
+			}
+			return this;
+		}
+
+		/**
+		 * @return `true` once the end of the compressed stream has been reached
+		 */
+		public boolean isFinished() {
+			return state == FINISHED;
+		}
+
+		/**
+		 * Return the inflater to the pool.
+		 */
+		@Override
+		public void close() {
+			if (inflater != null) {
+				releaseInflater(format, inflater);
+				inflater = null;
+			}
+		}
+
+		private int readHeader(ByteSequence chunk, int index) throws DataFormatException {
+			if (pendingLength == 0) {
+				int headerEnd = gzipHeaderEnd(chunk, index);
+				if (headerEnd >= 0) {
+					state = BODY;
+					return headerEnd;
+				}
+			}
+			appendPending(chunk, index, chunk.length() - index);
+			int headerEnd = gzipHeaderEnd(new BytesSubsequence(pending, 0, pendingLength, true), 0);
+			if (headerEnd < 0) {
+				return chunk.length();
+			}
+			// everything after the header in the pending bytes came from the end of this chunk
+			int bodyStart = chunk.length() - (pendingLength - headerEnd);
+			pendingLength = 0;
+			state = BODY;
+			return bodyStart;
+		}
+
+		private int inflate(ByteSequence chunk, int index, Consumer<? super Bytes> sink) throws DataFormatException {
+			Input input = new Input(chunk, index);
+			while (true) {
+				if (inflater.needsInput()) {
+					if (!input.hasRemaining()) {
+						return chunk.length();
+					}
+					input.feed(inflater);
+				}
+				if (inflater.needsDictionary()) {
+					throw new DataFormatException("preset dictionaries are not supported");
+				}
+				int produced = inflater.inflate(buffer, position, buffer.length - position);
+				if (crc != null) {
+					crc.update(buffer, position, produced);
+				}
+				totalOut += produced;
+				position += produced;
+				if (position == buffer.length) {
+					sink.accept(new Bytes(buffer, true));
+					buffer = new byte[CHUNK_SIZE];
+					position = 0;
+				}
+				if (inflater.finished()) {
+					state = format == Format.GZIP ? TRAILER : FINISHED;
+					return input.consumedUpTo(inflater.getRemaining());
+				}
+			}
+		}
+
+		private int readTrailer(ByteSequence chunk, int index) throws DataFormatException {
+			int count = Math.min(GZIP_TRAILER_LENGTH - pendingLength, chunk.length() - index);
+			appendPending(chunk, index, count);
+			if (pendingLength == GZIP_TRAILER_LENGTH) {
+				verifyGzipTrailer(new BytesSubsequence(pending, 0, pendingLength, true), 0, crc, totalOut);
+				state = FINISHED;
+			}
+			return index + count;
+		}
+
+		private void appendPending(ByteSequence chunk, int index, int count) {
+			if (pendingLength + count > pending.length) {
+				pending = Arrays.copyOf(pending, Math.max(pendingLength + count, pending.length * 2));
+			}
+			for (int i = 0; i < count; i++) {
+				pending[pendingLength++] = chunk.get(index + i);
+			}
+		}
+	}
+
+	private static void deflate(ByteSequence source, Format format, int level, Output output) {
+		Deflater deflater = acquireDeflater(format, level);
+		try {
+			CRC32 crc = null;
+			if (format == Format.GZIP) {
+				output.write(GZIP_HEADER);
+				crc = new CRC32();
+				source.checksum(crc);
+			}
+			Input input = new Input(source, 0);
+			while (input.hasRemaining()) {
+				input.feed(deflater);
+				while (!deflater.needsInput()) {
+					output.deflate(deflater);
+				}
+			}
+			deflater.finish();
+			while (!deflater.finished()) {
+				output.deflate(deflater);
+			}
+			if (crc != null) {
+				output.writeIntLE((int) crc.getValue());
+				output.writeIntLE(source.length());
+			}
+		}
+		finally {
+			releaseDeflater(format, deflater);
+		}
+	}
+
+	private static void inflate(ByteSequence source, Format format, Output output) throws DataFormatException {
+		int start = 0;
+		CRC32 crc = null;
+		if (format == Format.GZIP) {
+			start = gzipHeaderEnd(source, 0);
+			if (start < 0) {
+				throw new DataFormatException("truncated gzip header");
+			}
+			crc = new CRC32();
+		}
+		Inflater inflater = acquireInflater(format);
+		try {
+			Input input = new Input(source, start);
+			long totalOut = 0;
+			while (!inflater.finished()) {
+				if (inflater.needsInput()) {
+					if (!input.hasRemaining()) {
+						throw new DataFormatException("truncated input");
+					}
+					input.feed(inflater);
+				}
+				if (inflater.needsDictionary()) {
+					throw new DataFormatException("preset dictionaries are not supported");
+				}
+				int before = output.position();
+				int produced = output.inflate(inflater);
+				if (crc != null) {
+					output.updateChecksum(crc, before, produced);
+				}
+				totalOut += produced;
+			}
+			if (crc != null) {
+				int trailer = input.consumedUpTo(inflater.getRemaining());
+				if (source.length() - trailer < GZIP_TRAILER_LENGTH) {
+					throw new DataFormatException("truncated gzip trailer");
+				}
+				verifyGzipTrailer(source, trailer, crc, totalOut);
+			}
+		}
+		finally {
+			releaseInflater(format, inflater);
+		}
+	}
+
+	// returns the index after the gzip header starting at `from`, or -1 if the header is incomplete
+	private static int gzipHeaderEnd(ByteSequence source, int from) throws DataFormatException {
+		int length = source.length();
+		if (length - from < GZIP_HEADER.length) {
+			return -1;
+		}
+		if (source.get(from) != GZIP_HEADER[0] || source.get(from + 1) != GZIP_HEADER[1]) {
+			throw new DataFormatException("not in gzip format");
+		}
+		if (source.get(from + 2) != Deflater.DEFLATED) {
+			throw new DataFormatException("unsupported compression method");
+		}
+		int flags = source.getUnsignedByte(from + 3);
+		int index = from + GZIP_HEADER.length;
+		if ((flags & FEXTRA) != 0) {
+			if (length - index < 2) {
+				return -1;
+			}
+			index += 2 + (source.getUnsignedByte(index) | source.getUnsignedByte(index + 1) << 8);
+		}
+		if ((flags & FNAME) != 0) {
+			index = skipZeroTerminated(source, index);
+		}
+		if ((flags & FCOMMENT) != 0 && index >= 0) {
+			index = skipZeroTerminated(source, index);
+		}
+		if ((flags & FHCRC) != 0 && index >= 0) {
+			index += 2;
+		}
+		return index < 0 || index > length ? -1 : index;
+	}
+
+	private static int skipZeroTerminated(ByteSequence source, int index) {
+		int length = source.length();
+		for (int i = index; i < length; i++) {
+			if (source.get(i) == 0) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	private static void verifyGzipTrailer(ByteSequence source, int index, CRC32 crc, long totalOut)
+			throws DataFormatException {
+		if (readIntLE(source, index) != (int) crc.getValue()) {
+			throw new DataFormatException("corrupt gzip trailer, checksum mismatch");
+		}
+		if (readIntLE(source, index + 4) != (int) totalOut) {
+			throw new DataFormatException("corrupt gzip trailer, length mismatch");
+		}
+	}
+
+	private static int readIntLE(ByteSequence source, int index) {
+		return source.getUnsignedByte(index)
+				| source.getUnsignedByte(index + 1) << 8
+				| source.getUnsignedByte(index + 2) << 16
+				| source.getUnsignedByte(index + 3) << 24;
+	}
+
+	/*
+	 * Initial output capacity for decompression. The gzip trailer and the input length come from untrusted
+	 * input, so the hint is capped and the output left to grow as content is actually inflated; a small
+	 * input claiming a huge size cannot force a large allocation up front.
+	 */
+	private static int decompressedSizeHint(ByteSequence input, Format format) {
+		int length = input.length();
+		long limit = Math.min(MAX_SIZE_HINT, Math.max(64L, length * 4L));
+		if (format == Format.GZIP && length >= GZIP_HEADER.length + GZIP_TRAILER_LENGTH) {
+			// the trailer records the decompressed size modulo 2^32
+			long size = readIntLE(input, length - 4) & 0xffffffffL;
+			if (size > 0) {
+				return (int) Math.min(size, limit);
+			}
+		}
+		return (int) limit;
+	}
+
+	private static Deflater acquireDeflater(Format format, int level) {
+		Deflater deflater = (format.nowrap ? RAW_DEFLATERS : WRAPPED_DEFLATERS).acquire();
+		deflater.setLevel(level);
+		return deflater;
+	}
+
+	private static void releaseDeflater(Format format, Deflater deflater) {
+		deflater.reset();
+		if (!(format.nowrap ? RAW_DEFLATERS : WRAPPED_DEFLATERS).release(deflater)) {
+			deflater.end();
+		}
+	}
+
+	private static Inflater acquireInflater(Format format) {
+		return (format.nowrap ? RAW_INFLATERS : WRAPPED_INFLATERS).acquire();
+	}
+
+	private static void releaseInflater(Format format, Inflater inflater) {
+		inflater.reset();
+		if (!(format.nowrap ? RAW_INFLATERS : WRAPPED_INFLATERS).release(inflater)) {
+			inflater.end();
+		}
+	}
+
+	// bounded pool of idle instances. Instances beyond the bound are not retained.
+	private static final class Pool<T> {
+		private final ArrayBlockingQueue<T> idle = new ArrayBlockingQueue<>(POOL_SIZE);
+		private final Supplier<T> factory;
+
+		Pool(Supplier<T> factory) {
+			this.factory = factory;
+		}
+
+		T acquire() {
+			T instance = idle.poll();
+			return instance != null ? instance : factory.get();
+		}
+
+		boolean release(T instance) {
+			return idle.offer(instance);
+		}
+	}
+
+	// feeds a sequence to a deflater or inflater a piece at a time: the backing array when there is one,
+	// the read-only buffer view on runtimes with the ByteBuffer overloads, and otherwise a scratch copy
+	private static final class Input {
+		private final ByteSequence source;
+		private final byte[] array;
+		private final int arrayOffset;
+		private ByteBuffer buffer;
+		private byte[] scratch;
+		private int position;
+
+		Input(ByteSequence source, int position) {
+			this.source = source;
+			this.array = ByteSequences.readableArrayOf(source);
+			this.arrayOffset = array != null ? ByteSequences.readableArrayOffsetOf(source) : 0;
+			this.position = position;
+		}
+
+		boolean hasRemaining() {
+			return position < source.length();
+		}
+
+		// index within the source of the first byte not consumed by the coder
+		int consumedUpTo(int remaining) {
+			return position - remaining;
+		}
+
+		void feed(Deflater deflater) {
+			int length = source.length() - position;
+			if (array != null) {
+				deflater.setInput(array, arrayOffset + position, length);
+				position += length;
+			}
+			else if (ZipSupport.hasByteBufferOverloads()) {
+				ZipSupport.setInput(deflater, remainingBuffer());
+				position += length;
+			}
+			else {
+				int count = fillScratch();
+				deflater.setInput(scratch, 0, count);
+			}
+		}
+
+		void feed(Inflater inflater) {
+			int length = source.length() - position;
+			if (array != null) {
+				inflater.setInput(array, arrayOffset + position, length);
+				position += length;
+			}
+			else if (ZipSupport.hasByteBufferOverloads()) {
+				ZipSupport.setInput(inflater, remainingBuffer());
+				position += length;
+			}
+			else {
+				int count = fillScratch();
+				inflater.setInput(scratch, 0, count);
+			}
+		}
+
+		private ByteBuffer remainingBuffer() {
+			ByteBuffer view = source.getByteBuffer();
+			view.position(position);
+			return view;
+		}
+
+		private int fillScratch() {
+			if (buffer == null) {
+				buffer = source.getByteBuffer();
+				scratch = new byte[Math.min(CHUNK_SIZE, source.length() - position)];
+			}
+			int count = Math.min(scratch.length, source.length() - position);
+			buffer.position(position);
+			buffer.get(scratch, 0, count);
+			position += count;
+			return count;
+		}
+	}
+
+	// destination for coder output: a region of an array, which may grow, or a writable byte buffer
+	private static final class Output {
+		private byte[] array;
+		private final int start;
+		private int position;
+		private int limit;
+		private final boolean growable;
+		private final ByteBuffer buffer;
+
+		private Output(byte[] array, int start, int limit, boolean growable, ByteBuffer buffer) {
+			this.array = array;
+			this.start = start;
+			this.position = start;
+			this.limit = limit;
+			this.growable = growable;
+			this.buffer = buffer;
+		}
+
+		static Output growable(int initialCapacity) {
+			return new Output(new byte[initialCapacity], 0, initialCapacity, true, null);
+		}
+
+		// returns null if the target can only be written through a copy
+		static Output of(MutableByteSequence target, int offset) {
+			Objects.requireNonNull(target);
+			if (offset < 0 || offset > target.length()) {
+				throw new IndexOutOfBoundsException("offset");
+			}
+			byte[] array = ByteSequences.writableArrayOf(target);
+			if (array != null) {
+				int arrayOffset = ByteSequences.writableArrayOffsetOf(target);
+				return new Output(array, arrayOffset + offset, arrayOffset + target.length(), false, null);
+			}
+			if (target instanceof BytesBuffer && !((BytesBuffer) target).isReadOnly()
+					&& ZipSupport.hasByteBufferOverloads()) {
+				ByteBuffer view = ((BytesBuffer) target).writableView(offset);
+				return new Output(null, offset, target.length(), false, view);
+			}
+			return null;
+		}
+
+		int position() {
+			return buffer != null ? buffer.position() : position;
+		}
+
+		int written() {
+			return position() - start;
+		}
+
+		int deflate(Deflater deflater) {
+			if (isFull() && !growable) {
+				// zlib may need another call to report the end of a stream that exactly fills the output
+				if (deflater.deflate(new byte[1]) > 0) {
+					throw new IndexOutOfBoundsException("output too small");
+				}
+				return 0;
+			}
+			ensureSpace();
+			if (buffer != null) {
+				return ZipSupport.deflate(deflater, buffer, Deflater.NO_FLUSH);
+			}
+			int count = deflater.deflate(array, position, limit - position);
+			position += count;
+			return count;
+		}
+
+		int inflate(Inflater inflater) throws DataFormatException {
+			if (isFull() && !growable) {
+				if (inflater.inflate(new byte[1]) > 0) {
+					throw new IndexOutOfBoundsException("output too small");
+				}
+				return 0;
+			}
+			ensureSpace();
+			if (buffer != null) {
+				return ZipSupport.inflate(inflater, buffer);
+			}
+			int count = inflater.inflate(array, position, limit - position);
+			position += count;
+			return count;
+		}
+
+		void updateChecksum(CRC32 crc, int from, int count) {
+			if (buffer != null) {
+				ByteBuffer produced = buffer.duplicate();
+				produced.limit(from + count);
+				produced.position(from);
+				crc.update(produced);
+			}
+			else {
+				crc.update(array, from, count);
+			}
+		}
+
+		void write(byte[] bytes) {
+			for (byte b : bytes) {
+				write(b);
+			}
+		}
+
+		void writeIntLE(int value) {
+			for (int i = 0; i < Integer.BYTES; i++) {
+				write((byte) (value >>> (8 * i)));
+			}
+		}
+
+		private void write(byte b) {
+			ensureSpace();
+			if (buffer != null) {
+				buffer.put(b);
+			}
+			else {
+				array[position++] = b;
+			}
+		}
+
+		private boolean isFull() {
+			return buffer != null ? !buffer.hasRemaining() : position == limit;
+		}
+
+		private void ensureSpace() {
+			if (!isFull()) {
+				return;
+			}
+			if (!growable) {
+				throw new IndexOutOfBoundsException("output too small");
+			}
+			int capacity = (int) Math.min(Integer.MAX_VALUE - 8, array.length * 2L);
+			if (capacity == array.length) {
+				throw new OutOfMemoryError("Required array size too large");
+			}
+			array = Arrays.copyOf(array, capacity);
+			limit = capacity;
+		}
+
+		Bytes toBytes() {
+			if (position == 0) {
+				return Bytes.empty();
+			}
+			if (position == array.length) {
+				return new Bytes(array, true);
+			}
+			return new Bytes(array, 0, position);
+		}
+
+		int copyTo(MutableByteSequence target, int offset) {
+			int count = written();
+			if (count > target.length() - offset) {
+				throw new IndexOutOfBoundsException("output too small");
+			}
+			if (target instanceof BytesBuffer) {
+				((BytesBuffer) target).writableView(offset).put(array, start, count);
+			}
+			else {
+				for (int i = 0; i < count; i++) {
+					target.put(offset + i, array[start + i]);
+				}
+			}
+			return count;
+		}
+	}
+}
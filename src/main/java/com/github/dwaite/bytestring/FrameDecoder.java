@@ -0,0 +1,364 @@
+package com.github.dwaite.bytestring;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Splits the bytes read from a channel into frames, using a length prefix or a delimiter.
+ *
+ * Data is read into a reusable ring buffer, which may be a direct buffer or one supplied by the caller (for
+ * instance from a pool). A complete frame which is contiguous within the ring is returned as a read-only
+ * view over the ring without copying; only a frame which wraps around the end of the ring is copied.
+ *
+ * Views remain valid until the next call to {@link #readFrom(ReadableByteChannel)} or
+ * {@link #decode(ReadableByteChannel, Consumer)}, which may overwrite the space of frames already returned.
+ * Callers that need a frame beyond that should take a copy with {@link ByteSequence#toBytes()}.
+ *
+ * This class is not thread-safe.
+ */
+public class FrameDecoder {
+	/**
+	 * Default ring buffer capacity, in bytes
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private enum Framing {
+		FIXED_PREFIX, VARINT_PREFIX, DELIMITER
+	}
+
+	private final Framing framing;
+	private final int prefixBytes;
+	private final byte[] delimiter;
+	private final int maxFrameLength;
+	private final int capacity;
+
+	private BytesBuffer ring;
+	// total bytes consumed and written since creation; ring index is position % capacity
+	private long readPosition;
+	private long writePosition;
+	// delimiter framing: position from which to resume searching for a delimiter
+	private long scanPosition;
+
+	private FrameDecoder(Builder builder) {
+		this.framing = builder.framing;
+		this.prefixBytes = builder.prefixBytes;
+		this.delimiter = builder.delimiter;
+		this.ring = builder.buffer != null ? builder.buffer
+				: builder.direct ? BytesBuffer.allocateDirect(builder.capacity) : BytesBuffer.allocate(builder.capacity);
+		ring.clear();
+		this.capacity = ring.capacity();
+		int overhead = framing == Framing.FIXED_PREFIX ? prefixBytes
+				: framing == Framing.VARINT_PREFIX ? 5 : delimiter.length;
+		this.maxFrameLength = builder.maxFrameLength >= 0 ? builder.maxFrameLength : capacity - overhead;
+		if (maxFrameLength > capacity - overhead) {
+			throw new IllegalArgumentException("maxFrameLength exceeds buffer capacity");
+		}
+	}
+
+	/**
+	 * @return builder for a frame decoder, which by default expects a four byte big-endian length prefix
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Read from the channel into the free space of the ring buffer, using a scattering read when the free
+	 * space wraps around the end of the ring.
+	 *
+	 * @param channel channel to read from
+	 * @return number of bytes read, possibly zero if the ring is full or the channel is non-blocking, or
+	 *         `-1` at end of stream
+	 * @throws IOException on failure to read
+	 */
+	public int readFrom(ReadableByteChannel channel) throws IOException {
+		checkOpen();
+		int free = (int) (capacity - (writePosition - readPosition));
+		if (free == 0) {
+			return 0;
+		}
+		int writeIndex = (int) (writePosition % capacity);
+		int contiguous = Math.min(free, capacity - writeIndex);
+		ByteBuffer first = ring.writableView(writeIndex);
+		first.limit(writeIndex + contiguous);
+		long read;
+		if (contiguous < free && channel instanceof ScatteringByteChannel) {
+			ByteBuffer second = ring.writableView(0);
+			second.limit(free - contiguous);
+			read = ((ScatteringByteChannel) channel).read(new ByteBuffer[] { first, second });
+		}
+		else {
+			read = channel.read(first);
+		}
+		if (read > 0) {
+			writePosition += read;
+		}
+		return (int) read;
+	}
+
+	/**
+	 * Return the next complete frame held in the ring buffer, consuming it
+	 *
+	 * @return the frame content, excluding any prefix or delimiter, or `null` if no complete frame is
+	 *         buffered
+	 * @throws IOException if a frame exceeds the maximum frame length, or a length prefix is malformed
+	 */
+	public ByteSequence nextFrame() throws IOException {
+		checkOpen();
+		long available = writePosition - readPosition;
+		switch (framing) {
+		case FIXED_PREFIX: {
+			if (available < prefixBytes) {
+				return null;
+			}
+			long length = 0;
+			for (int i = 0; i < prefixBytes; i++) {
+				length = (length << 8) | (byteAt(readPosition + i) & 0xff);
+			}
+			return lengthPrefixed(length, prefixBytes, available);
+		}
+		case VARINT_PREFIX: {
+			long length = 0;
+			for (int i = 0; i < 5; i++) {
+				if (i == available) {
+					return null;
+				}
+				byte b = byteAt(readPosition + i);
+				length |= (long) (b & 0x7f) << (7 * i);
+				if (b >= 0) {
+					return lengthPrefixed(length, i + 1, available);
+				}
+			}
+			throw new IOException("malformed length prefix");
+		}
+		default:
+			return delimited();
+		}
+	}
+
+	/**
+	 * Read once from the channel, then pass each complete frame to the given action. Frames are only valid
+	 * for the duration of the call to the action.
+	 *
+	 * @param channel channel to read from
+	 * @param action action to perform for each frame
+	 * @return number of frames passed to the action, or `-1` at end of stream with no frames remaining
+	 * @throws IOException on failure to read, or malformed framing
+	 */
+	public int decode(ReadableByteChannel channel, Consumer<? super ByteSequence> action) throws IOException {
+		Objects.requireNonNull(action);
+		int read = readFrom(channel);
+		int frames = 0;
+		for (ByteSequence frame = nextFrame(); frame != null; frame = nextFrame()) {
+			action.accept(frame);
+			frames++;
+		}
+		return read < 0 && frames == 0 ? -1 : frames;
+	}
+
+	/**
+	 * @return number of bytes buffered but not yet returned as frames
+	 */
+	public int buffered() {
+		return (int) (writePosition - readPosition);
+	}
+
+	/**
+	 * Detach the ring buffer from this decoder, for instance to return it to a pool. The decoder may not be
+	 * used afterward.
+	 *
+	 * @return the ring buffer
+	 */
+	public BytesBuffer release() {
+		checkOpen();
+		BytesBuffer buffer = ring;
+		ring = null;
+		return buffer;
+	}
+
+	private ByteSequence lengthPrefixed(long length, int headerLength, long available) throws IOException {
+		if (length > maxFrameLength) {
+			throw new IOException("frame length " + length + " exceeds maximum of " + maxFrameLength);
+		}
+		if (available < headerLength + length) {
+			return null;
+		}
+		ByteSequence frame = frame(readPosition + headerLength, (int) length);
+		readPosition += headerLength + length;
+		return frame;
+	}
+
+	private ByteSequence delimited() throws IOException {
+		// a delimiter beyond the maximum frame length would end a frame which is too long
+		long end = Math.min(writePosition - delimiter.length, readPosition + maxFrameLength);
+		long position = Math.max(scanPosition, readPosition);
+		for (; position <= end; position++) {
+			if (matchesDelimiter(position)) {
+				ByteSequence frame = frame(readPosition, (int) (position - readPosition));
+				readPosition = position + delimiter.length;
+				scanPosition = readPosition;
+				return frame;
+			}
+		}
+		scanPosition = position;
+		if (position - readPosition > maxFrameLength) {
+			throw new IOException("frame exceeds maximum length of " + maxFrameLength);
+		}
+		return null;
+	}
+
+	private boolean matchesDelimiter(long position) {
+		for (int i = 0; i < delimiter.length; i++) {
+			if (byteAt(position + i) != delimiter[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private ByteSequence frame(long start, int length) {
+		int startIndex = (int) (start % capacity);
+		if (startIndex + length <= capacity) {
+			ByteBuffer view = ring.getByteBuffer();
+			view.limit(startIndex + length);
+			view.position(startIndex);
+			return BytesBuffer.wrap(view.slice());
+		}
+		// wraps around the end of the ring, so copy the two parts
+		byte[] copy = new byte[length];
+		int firstPart = capacity - startIndex;
+		ByteBuffer view = ring.getByteBuffer();
+		view.position(startIndex);
+		view.get(copy, 0, firstPart);
+		view.position(0);
+		view.get(copy, firstPart, length - firstPart);
+		return new Bytes(copy, true);
+	}
+
+	private byte byteAt(long position) {
+		return ring.get((int) (position % capacity));
+	}
+
+	private void checkOpen() {
+		if (ring == null) {
+			throw new IllegalStateException("released");
+		}
+	}
+
+	/**
+	 * Builder for {@link FrameDecoder}
+	 */
+	public static final class Builder {
+		private Framing framing = Framing.FIXED_PREFIX;
+		private int prefixBytes = Integer.BYTES;
+		private byte[] delimiter;
+		private int maxFrameLength = -1;
+		private int capacity = DEFAULT_CAPACITY;
+		private boolean direct;
+		private BytesBuffer buffer;
+
+		private Builder() {
+		}
+
+		/**
+		 * Frame by an unsigned big-endian length prefix of the given size
+		 *
+		 * @param bytes size of the prefix: 1, 2, 3 or 4 bytes
+		 * @return this builder
+		 */
+		public Builder fixedLengthPrefix(int bytes) {
+			if (bytes < 1 || bytes > 4) {
+				throw new IllegalArgumentException("bytes");
+			}
+			framing = Framing.FIXED_PREFIX;
+			prefixBytes = bytes;
+			return this;
+		}
+
+		/**
+		 * Frame by an unsigned varint length prefix, seven bits per byte with the least significant group
+		 * first, as written by {@link FramedSequences}
+		 *
+		 * @return this builder
+		 */
+		public Builder varintLengthPrefix() {
+			framing = Framing.VARINT_PREFIX;
+			return this;
+		}
+
+		/**
+		 * Frame by a terminating delimiter, which is not included in the frames
+		 *
+		 * @param delimiter non-empty delimiter sequence, such as `\r\n`
+		 * @return this builder
+		 */
+		public Builder delimiter(ByteSequence delimiter) {
+			if (delimiter.length() == 0) {
+				throw new IllegalArgumentException("delimiter");
+			}
+			framing = Framing.DELIMITER;
+			this.delimiter = delimiter.toBytes().toByteArray();
+			return this;
+		}
+
+		/**
+		 * @param maxFrameLength largest frame accepted; by default, the largest that fits in the ring buffer
+		 * @return this builder
+		 */
+		public Builder maxFrameLength(int maxFrameLength) {
+			if (maxFrameLength < 0) {
+				throw new IllegalArgumentException("maxFrameLength");
+			}
+			this.maxFrameLength = maxFrameLength;
+			return this;
+		}
+
+		/**
+		 * @param capacity capacity of the ring buffer to allocate
+		 * @return this builder
+		 */
+		public Builder capacity(int capacity) {
+			if (capacity <= 0) {
+				throw new IllegalArgumentException("capacity");
+			}
+			this.capacity = capacity;
+			return this;
+		}
+
+		/**
+		 * @param direct `true` to allocate the ring buffer as a direct buffer
+		 * @return this builder
+		 */
+		public Builder direct(boolean direct) {
+			this.direct = direct;
+			return this;
+		}
+
+		/**
+		 * Use the given buffer as the ring, rather than allocating one. Its whole capacity is used, and its
+		 * existing content is discarded. The buffer can be retrieved again with {@link FrameDecoder#release()}.
+		 *
+		 * @param buffer writable buffer to use
+		 * @return this builder
+		 */
+		public Builder buffer(BytesBuffer buffer) {
+			if (buffer.isReadOnly()) {
+				throw new IllegalArgumentException("buffer");
+			}
+			this.buffer = buffer;
+			return this;
+		}
+
+		/**
+		 * @return new frame decoder
+		 * @throws IllegalArgumentException if the maximum frame length does not fit in the ring buffer
+		 */
+		public FrameDecoder build() {
+			return new FrameDecoder(this);
+		}
+	}
+}
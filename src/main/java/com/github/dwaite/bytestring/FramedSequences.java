@@ -0,0 +1,349 @@
+package com.github.dwaite.bytestring;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compact binary format for collections of byte sequences.
+ *
+ * A collection is written as an unsigned varint count, followed by each sequence as an unsigned varint
+ * length and then its content. Varints are seven bits per byte, least significant group first, with the
+ * high bit set on all but the last byte.
+ *
+ * Writing reads the content of each sequence from its backing array or buffer, using a gathering write
+ * where the channel supports it. Reading from a stream or channel reads each sequence directly into an
+ * exactly-sized array owned by the resulting {@link Bytes}, and decoding an in-memory encoding returns
+ * views over the encoded content without copying.
+ */
+public final class FramedSequences {
+	// maximum number of sequences passed to a single gathering write
+	private static final int GATHER_BATCH = 64;
+	private static final int MAX_VARINT_SIZE = 5;
+	private static final int COPY_CHUNK = 8192;
+
+	private FramedSequences() {
+	}
+
+	/**
+	 * Compute the size of the encoding of the given sequences
+	 *
+	 * @param sequences sequences to measure
+	 * @return encoded size in bytes
+	 */
+	public static long encodedLength(Collection<? extends ByteSequence> sequences) {
+		long total = varintSize(sequences.size());
+		for (ByteSequence sequence : sequences) {
+			total += varintSize(sequence.length()) + sequence.length();
+		}
+		return total;
+	}
+
+	/**
+	 * Encode the given sequences into a single exactly-sized value
+	 *
+	 * @param sequences sequences to encode
+	 * @return encoded sequences
+	 * @throws IllegalArgumentException if the encoding would be larger than the maximum array size
+	 */
+	public static Bytes encode(Collection<? extends ByteSequence> sequences) {
+		long length = encodedLength(sequences);
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("encoding too large");
+		}
+		byte[] encoded = new byte[(int) length];
+		int position = writeVarint(encoded, 0, sequences.size());
+		for (ByteSequence sequence : sequences) {
+			int sequenceLength = sequence.length();
+			position += writeVarint(encoded, position, sequenceLength);
+			byte[] array = ByteSequences.readableArrayOf(sequence);
+			if (array != null) {
+				System.arraycopy(array, ByteSequences.readableArrayOffsetOf(sequence), encoded, position, sequenceLength);
+			}
+			else {
+				sequence.getByteBuffer().get(encoded, position, sequenceLength);
+			}
+			position += sequenceLength;
+		}
+		return length == 0 ? Bytes.empty() : new Bytes(encoded, true);
+	}
+
+	/**
+	 * Decode an in-memory encoding. The returned sequences are views over the content of `encoded` when it
+	 * is immutable, or over a single copy of it otherwise.
+	 *
+	 * @param encoded encoding of a collection of sequences
+	 * @return decoded sequences
+	 * @throws IllegalArgumentException if the encoding is malformed or has trailing data
+	 */
+	public static List<BytesSubsequence> decode(ByteSequence encoded) {
+		Objects.requireNonNull(encoded);
+		if (!(encoded instanceof Bytes || encoded instanceof BytesSubsequence)) {
+			encoded = encoded.toBytes();
+		}
+		byte[] array = ByteSequences.readableArrayOf(encoded);
+		int offset = ByteSequences.readableArrayOffsetOf(encoded);
+		int end = offset + encoded.length();
+		int[] position = { offset };
+		int count = readVarint(array, position, end);
+		List<BytesSubsequence> result = new ArrayList<>(Math.min(count, end - position[0]));
+		for (int i = 0; i < count; i++) {
+			int length = readVarint(array, position, end);
+			if (length > end - position[0]) {
+				throw new IllegalArgumentException("truncated encoding");
+			}
+			result.add(new BytesSubsequence(array, position[0], length, true));
+			position[0] += length;
+		}
+		if (position[0] != end) {
+			throw new IllegalArgumentException("trailing data");
+		}
+		return result;
+	}
+
+	/**
+	 * Write the given sequences to a stream. The stream is not flushed or closed.
+	 *
+	 * @param sequences sequences to write
+	 * @param out stream to write to, which should be buffered when writing many small sequences
+	 * @throws IOException on failure to write
+	 */
+	public static void write(Collection<? extends ByteSequence> sequences, OutputStream out) throws IOException {
+		Objects.requireNonNull(out);
+		byte[] header = new byte[MAX_VARINT_SIZE];
+		out.write(header, 0, writeVarint(header, 0, sequences.size()));
+		byte[] scratch = null;
+		for (ByteSequence sequence : sequences) {
+			int length = sequence.length();
+			out.write(header, 0, writeVarint(header, 0, length));
+			byte[] array = ByteSequences.readableArrayOf(sequence);
+			if (array != null) {
+				out.write(array, ByteSequences.readableArrayOffsetOf(sequence), length);
+				continue;
+			}
+			if (scratch == null) {
+				scratch = new byte[COPY_CHUNK];
+			}
+			ByteBuffer buffer = sequence.getByteBuffer();
+			while (buffer.hasRemaining()) {
+				int chunk = Math.min(buffer.remaining(), scratch.length);
+				buffer.get(scratch, 0, chunk);
+				out.write(scratch, 0, chunk);
+			}
+		}
+	}
+
+	/**
+	 * Write the given sequences to a channel, blocking until all content is written. Content is passed to
+	 * the channel as views over each sequence, with gathering writes where the channel supports them.
+	 *
+	 * @param sequences sequences to write
+	 * @param channel blocking channel to write to
+	 * @throws IOException on failure to write
+	 */
+	public static void write(Collection<? extends ByteSequence> sequences, WritableByteChannel channel)
+			throws IOException {
+		Objects.requireNonNull(channel);
+		byte[] countHeader = new byte[MAX_VARINT_SIZE];
+		writeFully(channel, ByteBuffer.wrap(countHeader, 0, writeVarint(countHeader, 0, sequences.size())));
+
+		ByteBuffer[] batch = new ByteBuffer[Math.min(sequences.size(), GATHER_BATCH) * 2];
+		byte[] headers = new byte[batch.length / 2 * MAX_VARINT_SIZE];
+		int batchSize = 0;
+		int headerPosition = 0;
+		for (ByteSequence sequence : sequences) {
+			int headerLength = writeVarint(headers, headerPosition, sequence.length());
+			batch[batchSize++] = ByteBuffer.wrap(headers, headerPosition, headerLength);
+			batch[batchSize++] = sequence.getByteBuffer();
+			headerPosition += headerLength;
+			if (batchSize == batch.length) {
+				writeFully(channel, batch, batchSize);
+				batchSize = 0;
+				headerPosition = 0;
+			}
+		}
+		writeFully(channel, batch, batchSize);
+	}
+
+	/**
+	 * Read a collection of sequences from a stream. Exactly the bytes of the encoding are consumed, and each
+	 * sequence is read directly into the array of the resulting value. Arrays grow as content arrives, so a
+	 * corrupt or malicious length cannot force a large allocation.
+	 *
+	 * @param in stream to read from
+	 * @return sequences read
+	 * @throws EOFException if the stream ends before the collection is complete
+	 * @throws IOException on failure to read, or a malformed encoding
+	 */
+	public static List<Bytes> read(InputStream in) throws IOException {
+		Objects.requireNonNull(in);
+		int count = readVarint(in);
+		List<Bytes> result = new ArrayList<>(Math.min(count, 1024));
+		for (int i = 0; i < count; i++) {
+			int length = readVarint(in);
+			if (length == 0) {
+				result.add(Bytes.empty());
+				continue;
+			}
+			result.add(new Bytes(ByteSequences.readBounded(length, (content, offset, remaining) -> {
+				while (remaining > 0) {
+					int n = in.read(content, offset, remaining);
+					if (n < 0) {
+						throw new EOFException();
+					}
+					offset += n;
+					remaining -= n;
+				}
+			}), true));
+		}
+		return result;
+	}
+
+	/**
+	 * Read a collection of sequences from a blocking channel. Exactly the bytes of the encoding are consumed,
+	 * and each sequence is read directly into the array of the resulting value. Arrays grow as content arrives,
+	 * so a corrupt or malicious length cannot force a large allocation.
+	 *
+	 * @param channel blocking channel to read from
+	 * @return sequences read
+	 * @throws EOFException if the channel ends before the collection is complete
+	 * @throws IOException on failure to read, or a malformed encoding
+	 */
+	public static List<Bytes> read(ReadableByteChannel channel) throws IOException {
+		Objects.requireNonNull(channel);
+		ByteBuffer single = ByteBuffer.allocate(1);
+		int count = readVarint(channel, single);
+		List<Bytes> result = new ArrayList<>(Math.min(count, 1024));
+		for (int i = 0; i < count; i++) {
+			int length = readVarint(channel, single);
+			if (length == 0) {
+				result.add(Bytes.empty());
+				continue;
+			}
+			result.add(new Bytes(ByteSequences.readBounded(length,
+					(content, offset, remaining) -> readFully(channel, ByteBuffer.wrap(content, offset, remaining))), true));
+		}
+		return result;
+	}
+
+	private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static void writeFully(WritableByteChannel channel, ByteBuffer[] buffers, int count)
+			throws IOException {
+		if (channel instanceof GatheringByteChannel) {
+			GatheringByteChannel gathering = (GatheringByteChannel) channel;
+			int first = 0;
+			while (first < count) {
+				gathering.write(buffers, first, count - first);
+				while (first < count && !buffers[first].hasRemaining()) {
+					buffers[first++] = null;
+				}
+			}
+		}
+		else {
+			for (int i = 0; i < count; i++) {
+				writeFully(channel, buffers[i]);
+				buffers[i] = null;
+			}
+		}
+	}
+
+	private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException();
+			}
+		}
+	}
+
+	private static int varintSize(int value) {
+		int size = 1;
+		while ((value & ~0x7f) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	private static int writeVarint(byte[] destination, int offset, int value) {
+		int position = offset;
+		while ((value & ~0x7f) != 0) {
+			destination[position++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		destination[position++] = (byte) value;
+		return position - offset;
+	}
+
+	private static int readVarint(byte[] source, int[] position, int end) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			if (position[0] == end) {
+				throw new IllegalArgumentException("truncated encoding");
+			}
+			int b = source[position[0]++];
+			value |= (b & 0x7f) << shift;
+			if (b >= 0) {
+				if (!checkVarint(shift, b)) {
+					break;
+				}
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("invalid length");
+	}
+
+	private static int readVarint(InputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				if (!checkVarint(shift, b)) {
+					throw new StreamCorruptedException("invalid length");
+				}
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("invalid length");
+	}
+
+	private static int readVarint(ReadableByteChannel channel, ByteBuffer single) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			single.clear();
+			readFully(channel, single);
+			int b = single.get(0) & 0xff;
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				if (!checkVarint(shift, b)) {
+					throw new StreamCorruptedException("invalid length");
+				}
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("invalid length");
+	}
+
+	// counts and lengths are non-negative ints, so the fifth byte may only carry three bits
+	private static boolean checkVarint(int shift, int last) {
+		return shift < 28 || last < 0x08;
+	}
+}
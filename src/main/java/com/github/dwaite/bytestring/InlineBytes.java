@@ -0,0 +1,266 @@
+package com.github.dwaite.bytestring;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+/**
+ * Immutable byte sequence of up to {@value #MAX_LENGTH} bytes, held inline in two `long` fields rather than
+ * in a separate array.
+ *
+ * Short keys and identifiers make up much of a typical workload, and for these the array behind a
+ * {@link Bytes} instance costs more than the data it holds. Here the bytes are packed in big-endian order
+ * with unused bytes zeroed, so that equality and ordering between two instances are a couple of word
+ * comparisons, and the hash code is computed once on construction.
+ *
+ * Instances are usually obtained through {@link ByteSequences#copyOf(ByteSequence)} and related factories,
+ * which choose this representation automatically for short values.
+ */
+public final class InlineBytes implements ByteSequence, Serializable, Comparable<ByteSequence> {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Maximum number of bytes which can be held inline
+	 */
+	public static final int MAX_LENGTH = 16;
+
+	private static final InlineBytes EMPTY = new InlineBytes(0L, 0L, 0);
+
+	// bytes [0, 8) and [8, 16), with the first byte in the most significant position
+	private final long high;
+	private final long low;
+	private final int length;
+	private final int hash;
+
+	private InlineBytes(long high, long low, int length) {
+		this.high = high;
+		this.low = low;
+		this.length = length;
+		this.hash = computeHash();
+	}
+
+	/**
+	 * @return an empty inline sequence
+	 */
+	public static InlineBytes empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Create a new instance by copying a range of an array
+	 *
+	 * @param input array to copy from
+	 * @param offset offset of the range within the array
+	 * @param length length of the range, at most {@value #MAX_LENGTH}
+	 * @return new instance
+	 * @throws IllegalArgumentException if `length` is greater than {@value #MAX_LENGTH}
+	 */
+	public static InlineBytes of(byte[] input, int offset, int length) {
+		Objects.requireNonNull(input);
+		if (offset < 0 || length < 0 || offset > input.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (length > MAX_LENGTH) {
+			throw new IllegalArgumentException("length");
+		}
+		if (length == 0) {
+			return EMPTY;
+		}
+		long high = 0;
+		long low = 0;
+		for (int i = 0; i < length; i++) {
+			long b = (input[offset + i] & 0xffL) << (56 - 8 * (i & 7));
+			if (i < 8) {
+				high |= b;
+			}
+			else {
+				low |= b;
+			}
+		}
+		return new InlineBytes(high, low, length);
+	}
+
+	/**
+	 * Create a new instance by copying a sequence
+	 *
+	 * @param sequence sequence to copy, of at most {@value #MAX_LENGTH} bytes
+	 * @return new instance
+	 * @throws IllegalArgumentException if the sequence is longer than {@value #MAX_LENGTH}
+	 */
+	public static InlineBytes of(ByteSequence sequence) {
+		if (sequence instanceof InlineBytes) {
+			return (InlineBytes) sequence;
+		}
+		byte[] array = ByteSequences.readableArrayOf(Objects.requireNonNull(sequence));
+		if (array != null) {
+			return of(array, ByteSequences.readableArrayOffsetOf(sequence), sequence.length());
+		}
+		int length = sequence.length();
+		if (length > MAX_LENGTH) {
+			throw new IllegalArgumentException("length");
+		}
+		long high = 0;
+		long low = 0;
+		for (int i = 0; i < length; i++) {
+			long b = (sequence.get(i) & 0xffL) << (56 - 8 * (i & 7));
+			if (i < 8) {
+				high |= b;
+			}
+			else {
+				low |= b;
+			}
+		}
+		return length == 0 ? EMPTY : new InlineBytes(high, low, length);
+	}
+
+	@Override
+	public byte get(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index");
+		}
+		return (byte) ((index < 8 ? high : low) >>> (56 - 8 * (index & 7)));
+	}
+
+	@Override
+	public long getLong(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index > length - Long.BYTES) {
+			throw new IndexOutOfBoundsException("index");
+		}
+		return window(index);
+	}
+
+	@Override
+	public int getInt(int index) throws IndexOutOfBoundsException {
+		if (index < 0 || index > length - Integer.BYTES) {
+			throw new IndexOutOfBoundsException("index");
+		}
+		return (int) (window(index) >>> 32);
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public InlineBytes subSequence(int start, int end) throws IndexOutOfBoundsException {
+		if (start < 0 || start > length) {
+			throw new IndexOutOfBoundsException("start");
+		}
+		if (end < start || end > length) {
+			throw new IndexOutOfBoundsException("end");
+		}
+		int newLength = end - start;
+		if (newLength == 0) {
+			return EMPTY;
+		}
+		// shift the range to the front, then clear the bytes past its end
+		long newHigh = window(start);
+		long newLow = start == 0 ? low : start >= 8 ? 0 : low << (8 * start);
+		if (newLength < 8) {
+			newHigh &= -1L << (64 - 8 * newLength);
+			newLow = 0;
+		}
+		else if (newLength < MAX_LENGTH) {
+			newLow &= newLength == 8 ? 0 : -1L << (128 - 8 * newLength);
+		}
+		return new InlineBytes(newHigh, newLow, newLength);
+	}
+
+	@Override
+	public Bytes toBytes() {
+		if (length == 0) {
+			return Bytes.empty();
+		}
+		BytesMetrics.record(BytesMetrics.Operation.TO_BYTES, length);
+		return new Bytes(content(), true);
+	}
+
+	/**
+	 * @return a new array holding the content of this sequence
+	 */
+	public byte[] toByteArray() {
+		BytesMetrics.record(BytesMetrics.Operation.TO_BYTE_ARRAY, length);
+		return content();
+	}
+
+	private byte[] content() {
+		byte[] result = new byte[length];
+		for (int i = 0; i < length; i++) {
+			result[i] = (byte) ((i < 8 ? high : low) >>> (56 - 8 * (i & 7)));
+		}
+		return result;
+	}
+
+	@Override
+	public ByteBuffer getByteBuffer() {
+		return ByteBuffer.wrap(content()).asReadOnlyBuffer();
+	}
+
+	@Override
+	public String asString(Charset charset) {
+		return new String(content(), charset);
+	}
+
+	@Override
+	public int compareTo(ByteSequence o) {
+		if (o instanceof InlineBytes) {
+			InlineBytes other = (InlineBytes) o;
+			// unused bytes are zero, so a proper prefix compares equal here and is ordered by length below
+			int comparison = Long.compareUnsigned(high, other.high);
+			if (comparison == 0) {
+				comparison = Long.compareUnsigned(low, other.low);
+			}
+			return comparison != 0 ? comparison : length - other.length;
+		}
+		return ByteSequence.super.compareTo(o);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (other instanceof InlineBytes) {
+			InlineBytes o = (InlineBytes) other;
+			return high == o.high && low == o.low && length == o.length;
+		}
+		if (!(other instanceof ByteSequence)) {
+			return false;
+		}
+		return ByteSequences.contentEquals(this, (ByteSequence) other);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return toHexString(false);
+	}
+
+	// eight bytes starting at the given index, zero filled past the end of the value
+	private long window(int index) {
+		if (index == 0) {
+			return high;
+		}
+		if (index < 8) {
+			return (high << (8 * index)) | (low >>> (64 - 8 * index));
+		}
+		return low << (8 * (index - 8));
+	}
+
+	private int computeHash() {
+		if (length == 0) {
+			return 0;
+		}
+		int result = 1;
+		for (int i = 0; i < length; i++) {
+			result = 31 * result + (byte) ((i < 8 ? high : low) >>> (56 - 8 * (i & 7)));
+		}
+		return result;
+	}
+}
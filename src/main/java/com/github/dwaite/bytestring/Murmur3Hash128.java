@@ -0,0 +1,218 @@
+package com.github.dwaite.bytestring;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The 128-bit x64 variant of the MurmurHash3 non-cryptographic hash function.
+ *
+ * The static methods hash a whole sequence, reading it in place from its backing array or buffer as
+ * little-endian words. Each word is a single memory access for direct buffers, and for heap storage on
+ * Java 9 and later; on Java 8, heap buffers assemble words from single bytes. An instance hashes
+ * incrementally, producing the same value for the same content however it is split between updates.
+ *
+ * Hashes are returned as sixteen bytes in the order of the reference implementation: the first 64-bit half
+ * followed by the second, each little-endian.
+ *
+ * Instances are not thread-safe.
+ */
+public final class Murmur3Hash128 {
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+	private static final int BLOCK = 16;
+
+	private final int seed;
+	private long h1;
+	private long h2;
+	private long length;
+	// partial block carried between updates
+	private final byte[] pending = new byte[BLOCK];
+	private final ByteBuffer pendingBuffer = ByteBuffer.wrap(pending).order(ByteOrder.LITTLE_ENDIAN);
+	private int pendingLength;
+
+	/**
+	 * Create an incremental hash with a seed of zero
+	 */
+	public Murmur3Hash128() {
+		this(0);
+	}
+
+	/**
+	 * Create an incremental hash
+	 *
+	 * @param seed seed value, treated as unsigned
+	 */
+	public Murmur3Hash128(int seed) {
+		this.seed = seed;
+		reset();
+	}
+
+	/**
+	 * Hash a sequence with a seed of zero
+	 *
+	 * @param input sequence to hash
+	 * @return 128-bit hash, as sixteen bytes
+	 */
+	public static ByteSequence hash(ByteSequence input) {
+		return hash(input, 0);
+	}
+
+	/**
+	 * Hash a sequence
+	 *
+	 * @param input sequence to hash
+	 * @param seed seed value, treated as unsigned
+	 * @return 128-bit hash, as sixteen bytes
+	 */
+	public static ByteSequence hash(ByteSequence input, int seed) {
+		long[] hash = hash128(input, seed);
+		return toSequence(hash[0], hash[1]);
+	}
+
+	/**
+	 * Hash a sequence with a seed of zero, returning the first half of the 128-bit hash
+	 *
+	 * @param input sequence to hash
+	 * @return first eight bytes of the hash, as a little-endian value
+	 */
+	public static long hash64(ByteSequence input) {
+		return hash128(input, 0)[0];
+	}
+
+	// both halves of the hash, for callers which use them as numbers
+	static long[] hash128(ByteSequence input, int seed) {
+		ByteBuffer buffer = ByteSequences.readableBufferOf(input);
+		int length = input.length();
+		long h1 = seed & 0xffffffffL;
+		long h2 = h1;
+		int position = 0;
+		for (int end = length - BLOCK; position <= end; position += BLOCK) {
+			h1 ^= mixK1(buffer.getLong(position));
+			h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+			h2 ^= mixK2(buffer.getLong(position + 8));
+			h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+		}
+		return finish(h1, h2, buffer, position, length, length);
+	}
+
+	/**
+	 * Add the content of a sequence to the hash
+	 *
+	 * @param input sequence to add
+	 * @return this instance
+	 */
+	public Murmur3Hash128 update(ByteSequence input) {
+		ByteBuffer buffer = ByteSequences.readableBufferOf(input);
+		int count = input.length();
+		length += count;
+		int position = 0;
+		if (pendingLength > 0) {
+			position = Math.min(BLOCK - pendingLength, count);
+			input.getBytes(0, pending, pendingLength, position);
+			pendingLength += position;
+			if (pendingLength < BLOCK) {
+				return this;
+			}
+			block(pendingBuffer, 0);
+			pendingLength = 0;
+		}
+		for (int end = count - BLOCK; position <= end; position += BLOCK) {
+			block(buffer, position);
+		}
+		if (position < count) {
+			input.getBytes(position, pending, 0, count - position);
+			pendingLength = count - position;
+		}
+		return this;
+	}
+
+	/**
+	 * Add a range of an array to the hash
+	 *
+	 * @param input array to add from
+	 * @param offset offset of the range
+	 * @param length length of the range
+	 * @return this instance
+	 */
+	public Murmur3Hash128 update(byte[] input, int offset, int length) {
+		if (offset < 0 || length < 0 || offset > input.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		return update(new BytesSubsequence(input, offset, length, true));
+	}
+
+	/**
+	 * @return hash of the content added so far, as sixteen bytes. Further content may still be added.
+	 */
+	public ByteSequence digest() {
+		long[] hash = finish(h1, h2, pendingBuffer, 0, pendingLength, length);
+		return toSequence(hash[0], hash[1]);
+	}
+
+	/**
+	 * Discard the content added so far
+	 */
+	public void reset() {
+		h1 = seed & 0xffffffffL;
+		h2 = h1;
+		length = 0;
+		pendingLength = 0;
+	}
+
+	private void block(ByteBuffer buffer, int position) {
+		h1 ^= mixK1(buffer.getLong(position));
+		h1 = (Long.rotateLeft(h1, 27) + h2) * 5 + 0x52dce729;
+		h2 ^= mixK2(buffer.getLong(position + 8));
+		h2 = (Long.rotateLeft(h2, 31) + h1) * 5 + 0x38495ab5;
+	}
+
+	private static long mixK1(long k1) {
+		return Long.rotateLeft(k1 * C1, 31) * C2;
+	}
+
+	private static long mixK2(long k2) {
+		return Long.rotateLeft(k2 * C2, 33) * C1;
+	}
+
+	// consume the final partial block of [position, end), then finalize over the total length
+	private static long[] finish(long h1, long h2, ByteBuffer buffer, int position, int end, long length) {
+		int remaining = end - position;
+		if (remaining > 8) {
+			long k2 = 0;
+			for (int i = remaining - 1; i >= 8; i--) {
+				k2 = (k2 << 8) | (buffer.get(position + i) & 0xff);
+			}
+			h2 ^= mixK2(k2);
+		}
+		if (remaining > 0) {
+			long k1 = 0;
+			for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+				k1 = (k1 << 8) | (buffer.get(position + i) & 0xff);
+			}
+			h1 ^= mixK1(k1);
+		}
+		h1 ^= length;
+		h2 ^= length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+		h1 += h2;
+		h2 += h1;
+		return new long[] { h1, h2 };
+	}
+
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		return k ^ (k >>> 33);
+	}
+
+	private static ByteSequence toSequence(long h1, long h2) {
+		byte[] bytes = new byte[BLOCK];
+		ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putLong(h1).putLong(h2);
+		return InlineBytes.of(bytes, 0, BLOCK);
+	}
+}
@@ -1,5 +1,6 @@
 package com.github.dwaite.bytestring;
 
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 /**
@@ -19,6 +20,91 @@ public interface MutableByteSequence extends ByteSequence {
 	public MutableByteSequence put(int index,
             byte value);
 	
+	/**
+	 * Overwrite a range of this sequence with a range of another sequence. The source may be this sequence
+	 * or share storage with it, in which case the copy behaves as if the source range were first copied to
+	 * a temporary buffer.
+	 * 
+	 * Implementations backed by arrays or buffers override this with bulk transfers. The default reads the
+	 * source in bulk, and then writes a byte at a time.
+	 * 
+	 * @param index index to start overwriting at
+	 * @param source sequence to copy from
+	 * @param sourceIndex index within `source` to start copying from
+	 * @param length number of bytes to copy
+	 * @return this instance
+	 * @throws IndexOutOfBoundsException if either range is not within its sequence
+	 */
+	default MutableByteSequence put(int index, ByteSequence source, int sourceIndex, int length) {
+		if (index < 0 || length < 0 || index > length() - length) {
+			throw new IndexOutOfBoundsException("index");
+		}
+		if (sourceIndex < 0 || sourceIndex > source.length() - length) {
+			throw new IndexOutOfBoundsException("sourceIndex");
+		}
+		if (source == this) {
+			return copyWithin(sourceIndex, index, length);
+		}
+		// read the source out first, as it may share storage with this sequence
+		byte[] copy = new byte[length];
+		ByteBuffer buffer = source.getByteBuffer();
+		buffer.position(sourceIndex);
+		buffer.get(copy);
+		for (int i = 0; i < length; i++) {
+			put(index + i, copy[i]);
+		}
+		return this;
+	}
+
+	/**
+	 * Set every byte in a range to the given value.
+	 * 
+	 * @param from first index to set, in the range [0, {@link #length()}]
+	 * @param to index after the last to set, in the range [`from`, {@link #length()}]
+	 * @param value byte value to write
+	 * @return this instance
+	 * @throws IndexOutOfBoundsException if the range is not within the sequence
+	 */
+	default MutableByteSequence fill(int from, int to, byte value) {
+		if (from < 0 || from > to || to > length()) {
+			throw new IndexOutOfBoundsException("from");
+		}
+		for (int i = from; i < to; i++) {
+			put(i, value);
+		}
+		return this;
+	}
+
+	/**
+	 * Copy a range of this sequence to another position within it. The ranges may overlap, with the
+	 * result being as if the source range were first copied to a temporary buffer.
+	 * 
+	 * @param sourceIndex index to copy from
+	 * @param destinationIndex index to copy to
+	 * @param length number of bytes to copy
+	 * @return this instance
+	 * @throws IndexOutOfBoundsException if either range is not within the sequence
+	 */
+	default MutableByteSequence copyWithin(int sourceIndex, int destinationIndex, int length) {
+		if (sourceIndex < 0 || length < 0 || sourceIndex > length() - length) {
+			throw new IndexOutOfBoundsException("sourceIndex");
+		}
+		if (destinationIndex < 0 || destinationIndex > length() - length) {
+			throw new IndexOutOfBoundsException("destinationIndex");
+		}
+		if (destinationIndex < sourceIndex) {
+			for (int i = 0; i < length; i++) {
+				put(destinationIndex + i, get(sourceIndex + i));
+			}
+		}
+		else {
+			for (int i = length - 1; i >= 0; i--) {
+				put(destinationIndex + i, get(sourceIndex + i));
+			}
+		}
+		return this;
+	}
+
 	/**
 	 * Overwrite two bytes with the given character value.
 	 * The multi-byte value is interpreted in {@link #order()}, which by default is network byte order/
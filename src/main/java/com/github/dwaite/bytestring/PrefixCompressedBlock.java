@@ -0,0 +1,451 @@
+package com.github.dwaite.bytestring;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Immutable, compact sorted set of byte sequence keys.
+ *
+ * Keys are stored in a single array in ascending order, with each key recorded as the length of the prefix
+ * it shares with the previous key followed by the remaining suffix, in the style of an SSTable data block.
+ * Every {@link Builder#restartInterval(int) restart interval} keys a key is stored in full, and the
+ * offsets of these restart points allow a binary search. Sets of keys sharing long prefixes typically need
+ * a fraction of the memory of a `TreeSet<Bytes>`.
+ *
+ * Ordering is that of {@link ByteSequence#compareTo(ByteSequence)}. Iteration is through a {@link Cursor},
+ * which presents each key as a reusable view rather than allocating per key.
+ */
+public final class PrefixCompressedBlock {
+	/** Default number of keys between full keys which the binary search can start from */
+	public static final int DEFAULT_RESTART_INTERVAL = 16;
+
+	private static final PrefixCompressedBlock EMPTY = new PrefixCompressedBlock(new byte[0], new int[0], 0,
+			DEFAULT_RESTART_INTERVAL);
+
+	private final byte[] data;
+	private final int[] restarts;
+	private final int size;
+	private final int restartInterval;
+
+	private PrefixCompressedBlock(byte[] data, int[] restarts, int size, int restartInterval) {
+		this.data = data;
+		this.restarts = restarts;
+		this.size = size;
+		this.restartInterval = restartInterval;
+	}
+
+	/**
+	 * @return block with no keys
+	 */
+	public static PrefixCompressedBlock empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Build a block from keys which are already in strictly ascending order.
+	 *
+	 * @param sortedKeys keys to include
+	 * @return new block
+	 * @throws IllegalArgumentException if the keys are not in strictly ascending order
+	 */
+	public static PrefixCompressedBlock of(Iterable<? extends ByteSequence> sortedKeys) {
+		Builder builder = builder();
+		for (ByteSequence key : sortedKeys) {
+			builder.add(key);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return new builder using the {@link #DEFAULT_RESTART_INTERVAL}
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return number of keys in the block
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return `true` if the block has no keys
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Estimate the memory retained by this block.
+	 *
+	 * @return approximate size in bytes
+	 */
+	public long memoryFootprint() {
+		return 16L + data.length + 16L + restarts.length * 4L + 32L;
+	}
+
+	/**
+	 * Search for a key.
+	 *
+	 * @param key key to search for
+	 * @return index of the key if it is present, otherwise `-(insertion point) - 1` where the insertion point
+	 * is the index of the first greater key, following the convention of
+	 * {@link Arrays#binarySearch(Object[], Object)}
+	 */
+	public int indexOf(ByteSequence key) {
+		Objects.requireNonNull(key);
+		Cursor cursor = new Cursor();
+		cursor.seek(key);
+		if (cursor.isValid() && compare(cursor.key, cursor.keyLength, key) == 0) {
+			return cursor.index;
+		}
+		return -cursor.index - 1;
+	}
+
+	/**
+	 * @param key key to search for
+	 * @return `true` if the key is present
+	 */
+	public boolean contains(ByteSequence key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * Return a copy of the key at a given position.
+	 *
+	 * @param index position in the range [0, {@link #size()})
+	 * @return new Bytes instance holding the key
+	 * @throws IndexOutOfBoundsException if the index is outside the allowable range
+	 */
+	public Bytes get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index");
+		}
+		Cursor cursor = new Cursor();
+		cursor.seekToRestart(index / restartInterval);
+		while (cursor.index < index) {
+			cursor.next();
+		}
+		return new Bytes(cursor.key, 0, cursor.keyLength);
+	}
+
+	/**
+	 * @return cursor positioned at the first key
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Pass each key to the given action in ascending order. The key passed is a reusable view which is only
+	 * valid for the duration of the call.
+	 *
+	 * @param action action to perform for each key
+	 */
+	public void forEach(Consumer<? super ByteSequence> action) {
+		Objects.requireNonNull(action);
+		for (Cursor cursor = new Cursor(); cursor.isValid(); cursor.next()) {
+			action.accept(cursor.key());
+		}
+	}
+
+	/**
+	 * Pass each key in a range to the given action in ascending order. The key passed is a reusable view
+	 * which is only valid for the duration of the call.
+	 *
+	 * @param from lowest key to include
+	 * @param to key to stop before
+	 * @param action action to perform for each key
+	 */
+	public void forEachInRange(ByteSequence from, ByteSequence to, Consumer<? super ByteSequence> action) {
+		Objects.requireNonNull(to);
+		Objects.requireNonNull(action);
+		for (Cursor cursor = new Cursor().seek(from); cursor.isValid(); cursor.next()) {
+			if (compare(cursor.key, cursor.keyLength, to) >= 0) {
+				return;
+			}
+			action.accept(cursor.key());
+		}
+	}
+
+	/**
+	 * Position within a block. A cursor is created at the first key, and becomes invalid once advanced past
+	 * the last key.
+	 *
+	 * The view returned by {@link #key()} is reused, with its content replaced as the cursor moves; copy it
+	 * with {@link ByteSequence#toBytes()} to retain a key. Cursors are not thread-safe, but any number of
+	 * cursors may be used on the same block concurrently.
+	 */
+	public final class Cursor {
+		private int index;
+		// offset of the entry after the current one
+		private int position;
+		private byte[] key = new byte[32];
+		private int keyLength;
+		private BytesBuffer view;
+
+		private Cursor() {
+			seekToFirst();
+		}
+
+		/**
+		 * @return `true` if the cursor is positioned at a key
+		 */
+		public boolean isValid() {
+			return index < size;
+		}
+
+		/**
+		 * @return index of the current key within the block, or {@link PrefixCompressedBlock#size()} if the
+		 * cursor is not valid
+		 */
+		public int index() {
+			return index;
+		}
+
+		/**
+		 * @return view of the current key, valid until the cursor is next moved
+		 * @throws NoSuchElementException if the cursor is not valid
+		 */
+		public ByteSequence key() {
+			if (!isValid()) {
+				throw new NoSuchElementException();
+			}
+			if (view == null || view.capacity() != key.length) {
+				view = BytesBuffer.wrap(ByteBuffer.wrap(key).asReadOnlyBuffer());
+			}
+			view.limit(keyLength);
+			return view;
+		}
+
+		/**
+		 * Advance to the next key.
+		 *
+		 * @return `true` if the cursor is positioned at a key
+		 */
+		public boolean next() {
+			if (index < size) {
+				index++;
+				if (index < size) {
+					decode();
+				}
+			}
+			return isValid();
+		}
+
+		/**
+		 * @return this cursor, positioned at the first key
+		 */
+		public Cursor seekToFirst() {
+			if (size > 0) {
+				seekToRestart(0);
+			}
+			else {
+				index = 0;
+			}
+			return this;
+		}
+
+		/**
+		 * Position at the first key greater than or equal to the target.
+		 *
+		 * @param target key to search for
+		 * @return this cursor, which is invalid if all keys are less than the target
+		 */
+		public Cursor seek(ByteSequence target) {
+			Objects.requireNonNull(target);
+			if (size == 0) {
+				index = 0;
+				return this;
+			}
+			// find the last restart point with a key less than or equal to the target
+			int low = 0;
+			int high = restarts.length - 1;
+			while (low < high) {
+				int middle = (low + high + 1) >>> 1;
+				int offset = restarts[middle];
+				int length = readVarint(offset + 1);
+				int keyOffset = offset + 1 + varintSize(length);
+				if (compare(data, keyOffset, length, target) <= 0) {
+					low = middle;
+				}
+				else {
+					high = middle - 1;
+				}
+			}
+			seekToRestart(low);
+			while (isValid() && compare(key, keyLength, target) < 0) {
+				next();
+			}
+			return this;
+		}
+
+		private void seekToRestart(int restart) {
+			index = restart * restartInterval;
+			position = restarts[restart];
+			keyLength = 0;
+			decode();
+		}
+
+		private void decode() {
+			int shared = readVarint(position);
+			position += varintSize(shared);
+			int unshared = readVarint(position);
+			position += varintSize(unshared);
+			int length = shared + unshared;
+			if (length > key.length) {
+				key = Arrays.copyOf(key, Math.max(length, key.length * 2));
+			}
+			System.arraycopy(data, position, key, shared, unshared);
+			position += unshared;
+			keyLength = length;
+		}
+	}
+
+	/**
+	 * Accumulates keys in ascending order to build a {@link PrefixCompressedBlock}.
+	 */
+	public static final class Builder {
+		private int restartInterval = DEFAULT_RESTART_INTERVAL;
+		private byte[] data = new byte[256];
+		private int dataLength;
+		private int[] restarts = new int[8];
+		private int size;
+		private byte[] last = new byte[32];
+		private int lastLength;
+
+		private Builder() {
+		}
+
+		/**
+		 * Set the number of keys between full keys. Smaller intervals make searches faster at the cost of
+		 * less compression.
+		 *
+		 * @param interval restart interval, which must be positive
+		 * @return this builder
+		 * @throws IllegalStateException if keys have already been added
+		 */
+		public Builder restartInterval(int interval) {
+			if (interval < 1) {
+				throw new IllegalArgumentException("interval");
+			}
+			if (size > 0) {
+				throw new IllegalStateException("keys already added");
+			}
+			restartInterval = interval;
+			return this;
+		}
+
+		/**
+		 * Append a key, which must be greater than all keys previously added.
+		 *
+		 * @param key key to add
+		 * @return this builder
+		 * @throws IllegalArgumentException if the key is not greater than the previous key
+		 */
+		public Builder add(ByteSequence key) {
+			Objects.requireNonNull(key);
+			int length = key.length();
+			if (size > 0 && compare(last, lastLength, key) >= 0) {
+				throw new IllegalArgumentException("keys must be added in strictly ascending order");
+			}
+			int shared = 0;
+			if (size % restartInterval == 0) {
+				if (size / restartInterval == restarts.length) {
+					restarts = Arrays.copyOf(restarts, restarts.length * 2);
+				}
+				restarts[size / restartInterval] = dataLength;
+			}
+			else {
+				int limit = Math.min(lastLength, length);
+				while (shared < limit && last[shared] == key.get(shared)) {
+					shared++;
+				}
+			}
+			int unshared = length - shared;
+			ensureCapacity(varintSize(shared) + varintSize(unshared) + unshared);
+			dataLength = writeVarint(dataLength, shared);
+			dataLength = writeVarint(dataLength, unshared);
+			if (length > last.length) {
+				last = Arrays.copyOf(last, Math.max(length, last.length * 2));
+			}
+			for (int i = shared; i < length; i++) {
+				byte b = key.get(i);
+				data[dataLength++] = b;
+				last[i] = b;
+			}
+			lastLength = length;
+			size++;
+			return this;
+		}
+
+		/**
+		 * @return new block containing the keys added so far
+		 */
+		public PrefixCompressedBlock build() {
+			if (size == 0) {
+				return EMPTY;
+			}
+			int restartCount = (size + restartInterval - 1) / restartInterval;
+			return new PrefixCompressedBlock(Arrays.copyOf(data, dataLength), Arrays.copyOf(restarts, restartCount),
+					size, restartInterval);
+		}
+
+		private void ensureCapacity(int additional) {
+			if (dataLength + additional > data.length) {
+				data = Arrays.copyOf(data, Math.max(dataLength + additional, data.length * 2));
+			}
+		}
+
+		private int writeVarint(int offset, int value) {
+			while ((value & ~0x7f) != 0) {
+				data[offset++] = (byte) ((value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			data[offset++] = (byte) value;
+			return offset;
+		}
+	}
+
+	private int readVarint(int offset) {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = data[offset++];
+			value |= (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+	private static int varintSize(int value) {
+		int size = 1;
+		while ((value & ~0x7f) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	private static int compare(byte[] array, int length, ByteSequence other) {
+		return compare(array, 0, length, other);
+	}
+
+	// unsigned lexicographic comparison, as ByteSequence.compareTo
+	private static int compare(byte[] array, int offset, int length, ByteSequence other) {
+		int otherLength = other.length();
+		int shortest = Math.min(length, otherLength);
+		for (int i = 0; i < shortest; i++) {
+			int comparison = (array[offset + i] & 0xff) - other.getUnsignedByte(i);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return length - otherLength;
+	}
+}
@@ -0,0 +1,74 @@
+package com.github.dwaite.bytestring;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.StreamCorruptedException;
+
+/**
+ * Serialization proxy for the immutable sequence types.
+ *
+ * Only the visible content of a sequence is written, as a type byte, a length and the bytes themselves, so
+ * that a small view over a large array does not serialize the whole array. On reading, the content is read
+ * into an exactly-sized array which is adopted by the resolved instance without a further copy. The array
+ * grows as content arrives, so a corrupt or malicious length cannot force a large allocation.
+ */
+final class Ser implements Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	static final byte BYTES_TYPE = 1;
+	static final byte BYTES_SUBSEQUENCE_TYPE = 2;
+
+	private byte type;
+	private ByteSequence object;
+
+	/**
+	 * Constructor for deserialization
+	 */
+	public Ser() {
+	}
+
+	Ser(byte type, ByteSequence object) {
+		this.type = type;
+		this.object = object;
+	}
+
+	@Override
+	public void writeExternal(ObjectOutput out) throws IOException {
+		out.writeByte(type);
+		int length = object.length();
+		out.writeInt(length);
+		byte[] array = ByteSequences.readableArrayOf(object);
+		out.write(array, ByteSequences.readableArrayOffsetOf(object), length);
+	}
+
+	@Override
+	public void readExternal(ObjectInput in) throws IOException {
+		type = in.readByte();
+		int length = in.readInt();
+		if (length < 0) {
+			throw new StreamCorruptedException("negative length");
+		}
+		byte[] content = ByteSequences.readBounded(length, in::readFully);
+		switch (type) {
+		case BYTES_TYPE:
+			object = length == 0 ? Bytes.empty() : new Bytes(content, true);
+			break;
+		case BYTES_SUBSEQUENCE_TYPE:
+			object = length == 0 ? BytesSubsequence.empty() : new BytesSubsequence(content, 0, length, true);
+			break;
+		default:
+			throw new StreamCorruptedException("Unknown serialized type");
+		}
+	}
+
+	private Object readResolve() {
+		return object;
+	}
+
+	static InvalidObjectException proxyRequired() {
+		return new InvalidObjectException("Deserialization via serialization proxy");
+	}
+}
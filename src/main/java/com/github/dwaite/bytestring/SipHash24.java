@@ -0,0 +1,183 @@
+package com.github.dwaite.bytestring;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.zip.Checksum;
+
+/**
+ * The SipHash-2-4 keyed hash function. With a secret key, its output cannot be predicted by an attacker,
+ * so it is suited to hash tables and sharding over untrusted keys where flooding a single bucket is a
+ * concern.
+ *
+ * The static methods hash a whole sequence, reading it in place from its backing array or buffer as
+ * little-endian words. Each word is a single memory access for direct buffers, and for heap storage on
+ * Java 9 and later; on Java 8, heap buffers assemble words from single bytes. An instance hashes
+ * incrementally, and as a {@link Checksum} can also be passed to {@link ByteSequence#checksum(Checksum)}.
+ * Both produce the same value for the same content, however it is split between updates.
+ *
+ * Instances are not thread-safe.
+ */
+public final class SipHash24 implements Checksum {
+	private final long k0;
+	private final long k1;
+	private long v0;
+	private long v1;
+	private long v2;
+	private long v3;
+	private long length;
+	// partial word carried between updates
+	private final byte[] pending = new byte[Long.BYTES];
+	private final ByteBuffer pendingBuffer = ByteBuffer.wrap(pending).order(ByteOrder.LITTLE_ENDIAN);
+	private int pendingLength;
+
+	/**
+	 * Create an incremental hash
+	 *
+	 * @param k0 first eight bytes of the key, as a little-endian value
+	 * @param k1 second eight bytes of the key, as a little-endian value
+	 */
+	public SipHash24(long k0, long k1) {
+		this.k0 = k0;
+		this.k1 = k1;
+		reset();
+	}
+
+	/**
+	 * Create an incremental hash
+	 *
+	 * @param key sixteen byte key
+	 * @throws IllegalArgumentException if the key is not sixteen bytes
+	 */
+	public SipHash24(ByteSequence key) {
+		this(keyWord(key, 0), keyWord(key, 1));
+	}
+
+	/**
+	 * Hash a sequence
+	 *
+	 * @param k0 first eight bytes of the key, as a little-endian value
+	 * @param k1 second eight bytes of the key, as a little-endian value
+	 * @param input sequence to hash
+	 * @return 64-bit hash
+	 */
+	public static long hash(long k0, long k1, ByteSequence input) {
+		return new SipHash24(k0, k1).update(input).getValue();
+	}
+
+	/**
+	 * Add the content of a sequence to the hash
+	 *
+	 * @param input sequence to add
+	 * @return this instance
+	 */
+	public SipHash24 update(ByteSequence input) {
+		ByteBuffer buffer = ByteSequences.readableBufferOf(input);
+		int count = input.length();
+		length += count;
+		int position = 0;
+		if (pendingLength > 0) {
+			position = Math.min(Long.BYTES - pendingLength, count);
+			input.getBytes(0, pending, pendingLength, position);
+			pendingLength += position;
+			if (pendingLength < Long.BYTES) {
+				return this;
+			}
+			compress(pendingBuffer.getLong(0));
+			pendingLength = 0;
+		}
+		for (int end = count - Long.BYTES; position <= end; position += Long.BYTES) {
+			compress(buffer.getLong(position));
+		}
+		if (position < count) {
+			input.getBytes(position, pending, 0, count - position);
+			pendingLength = count - position;
+		}
+		return this;
+	}
+
+	@Override
+	public void update(int b) {
+		update(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void update(byte[] b, int off, int len) {
+		if (off < 0 || len < 0 || off > b.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		update(new BytesSubsequence(b, off, len, true));
+	}
+
+	/**
+	 * @return hash of the content added so far. Further content may still be added.
+	 */
+	@Override
+	public long getValue() {
+		long last = length << 56;
+		for (int i = pendingLength - 1; i >= 0; i--) {
+			last |= (pending[i] & 0xffL) << (8 * i);
+		}
+		long s0 = v0;
+		long s1 = v1;
+		long s2 = v2;
+		long s3 = v3;
+		// rounds are written out over locals here, so that the hash can still be updated afterward
+		s3 ^= last;
+		for (int round = 0; round < 6; round++) {
+			if (round == 2) {
+				s0 ^= last;
+				s2 ^= 0xff;
+			}
+			s0 += s1;
+			s1 = Long.rotateLeft(s1, 13) ^ s0;
+			s0 = Long.rotateLeft(s0, 32);
+			s2 += s3;
+			s3 = Long.rotateLeft(s3, 16) ^ s2;
+			s0 += s3;
+			s3 = Long.rotateLeft(s3, 21) ^ s0;
+			s2 += s1;
+			s1 = Long.rotateLeft(s1, 17) ^ s2;
+			s2 = Long.rotateLeft(s2, 32);
+		}
+		return s0 ^ s1 ^ s2 ^ s3;
+	}
+
+	@Override
+	public void reset() {
+		v0 = k0 ^ 0x736f6d6570736575L;
+		v1 = k1 ^ 0x646f72616e646f6dL;
+		v2 = k0 ^ 0x6c7967656e657261L;
+		v3 = k1 ^ 0x7465646279746573L;
+		length = 0;
+		pendingLength = 0;
+	}
+
+	private void compress(long m) {
+		v3 ^= m;
+		sipRound();
+		sipRound();
+		v0 ^= m;
+	}
+
+	private void sipRound() {
+		v0 += v1;
+		v1 = Long.rotateLeft(v1, 13) ^ v0;
+		v0 = Long.rotateLeft(v0, 32);
+		v2 += v3;
+		v3 = Long.rotateLeft(v3, 16) ^ v2;
+		v0 += v3;
+		v3 = Long.rotateLeft(v3, 21) ^ v0;
+		v2 += v1;
+		v1 = Long.rotateLeft(v1, 17) ^ v2;
+		v2 = Long.rotateLeft(v2, 32);
+	}
+
+	private static long keyWord(ByteSequence key, int word) {
+		Objects.requireNonNull(key);
+		if (key.length() != 2 * Long.BYTES) {
+			throw new IllegalArgumentException("key must be sixteen bytes");
+		}
+		return ByteSequences.readableBufferOf(key).getLong(word * Long.BYTES);
+	}
+}
@@ -0,0 +1,200 @@
+package com.github.dwaite.bytestring;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.Checksum;
+
+/**
+ * The 64-bit xxHash non-cryptographic hash function, for sharding, sketches and hash tables where
+ * {@link ByteSequence#hashCode()} is too weak.
+ *
+ * The static methods hash a whole sequence, reading it in place from its backing array or buffer as
+ * little-endian words. Each word is a single memory access for direct buffers, and for heap storage on
+ * Java 9 and later; on Java 8, heap buffers assemble words from single bytes. An instance hashes
+ * incrementally, and as a {@link Checksum} can also be passed to {@link ByteSequence#checksum(Checksum)}.
+ * Both produce the same value for the same content, however it is split between updates.
+ *
+ * Instances are not thread-safe.
+ */
+public final class XxHash64 implements Checksum {
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+	private static final int STRIPE = 32;
+
+	private final long seed;
+	private long v1;
+	private long v2;
+	private long v3;
+	private long v4;
+	private long length;
+	// partial stripe carried between updates
+	private final byte[] pending = new byte[STRIPE];
+	private final ByteBuffer pendingBuffer = ByteBuffer.wrap(pending).order(ByteOrder.LITTLE_ENDIAN);
+	private int pendingLength;
+
+	/**
+	 * Create an incremental hash with a seed of zero
+	 */
+	public XxHash64() {
+		this(0);
+	}
+
+	/**
+	 * Create an incremental hash
+	 *
+	 * @param seed seed value
+	 */
+	public XxHash64(long seed) {
+		this.seed = seed;
+		reset();
+	}
+
+	/**
+	 * Hash a sequence with a seed of zero
+	 *
+	 * @param input sequence to hash
+	 * @return 64-bit hash
+	 */
+	public static long hash(ByteSequence input) {
+		return hash(input, 0);
+	}
+
+	/**
+	 * Hash a sequence
+	 *
+	 * @param input sequence to hash
+	 * @param seed seed value
+	 * @return 64-bit hash
+	 */
+	public static long hash(ByteSequence input, long seed) {
+		ByteBuffer buffer = ByteSequences.readableBufferOf(input);
+		int length = input.length();
+		int position = 0;
+		long hash;
+		if (length >= STRIPE) {
+			long v1 = seed + PRIME1 + PRIME2;
+			long v2 = seed + PRIME2;
+			long v3 = seed;
+			long v4 = seed - PRIME1;
+			for (int end = length - STRIPE; position <= end; position += STRIPE) {
+				v1 = round(v1, buffer.getLong(position));
+				v2 = round(v2, buffer.getLong(position + 8));
+				v3 = round(v3, buffer.getLong(position + 16));
+				v4 = round(v4, buffer.getLong(position + 24));
+			}
+			hash = converge(v1, v2, v3, v4);
+		}
+		else {
+			hash = seed + PRIME5;
+		}
+		return finish(hash + length, buffer, position, length);
+	}
+
+	/**
+	 * Add the content of a sequence to the hash
+	 *
+	 * @param input sequence to add
+	 * @return this instance
+	 */
+	public XxHash64 update(ByteSequence input) {
+		ByteBuffer buffer = ByteSequences.readableBufferOf(input);
+		int count = input.length();
+		length += count;
+		int position = 0;
+		if (pendingLength > 0) {
+			position = Math.min(STRIPE - pendingLength, count);
+			input.getBytes(0, pending, pendingLength, position);
+			pendingLength += position;
+			if (pendingLength < STRIPE) {
+				return this;
+			}
+			stripe(pendingBuffer, 0);
+			pendingLength = 0;
+		}
+		for (int end = count - STRIPE; position <= end; position += STRIPE) {
+			stripe(buffer, position);
+		}
+		if (position < count) {
+			input.getBytes(position, pending, 0, count - position);
+			pendingLength = count - position;
+		}
+		return this;
+	}
+
+	@Override
+	public void update(int b) {
+		update(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void update(byte[] b, int off, int len) {
+		if (off < 0 || len < 0 || off > b.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		update(new BytesSubsequence(b, off, len, true));
+	}
+
+	/**
+	 * @return hash of the content added so far. Further content may still be added.
+	 */
+	@Override
+	public long getValue() {
+		long hash = length >= STRIPE ? converge(v1, v2, v3, v4) : seed + PRIME5;
+		return finish(hash + length, pendingBuffer, 0, pendingLength);
+	}
+
+	@Override
+	public void reset() {
+		v1 = seed + PRIME1 + PRIME2;
+		v2 = seed + PRIME2;
+		v3 = seed;
+		v4 = seed - PRIME1;
+		length = 0;
+		pendingLength = 0;
+	}
+
+	private void stripe(ByteBuffer buffer, int position) {
+		v1 = round(v1, buffer.getLong(position));
+		v2 = round(v2, buffer.getLong(position + 8));
+		v3 = round(v3, buffer.getLong(position + 16));
+		v4 = round(v4, buffer.getLong(position + 24));
+	}
+
+	private static long round(long accumulator, long input) {
+		return Long.rotateLeft(accumulator + input * PRIME2, 31) * PRIME1;
+	}
+
+	private static long converge(long v1, long v2, long v3, long v4) {
+		long hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+				+ Long.rotateLeft(v4, 18);
+		hash = (hash ^ round(0, v1)) * PRIME1 + PRIME4;
+		hash = (hash ^ round(0, v2)) * PRIME1 + PRIME4;
+		hash = (hash ^ round(0, v3)) * PRIME1 + PRIME4;
+		return (hash ^ round(0, v4)) * PRIME1 + PRIME4;
+	}
+
+	// consume the final partial stripe of [position, end), then avalanche
+	private static long finish(long hash, ByteBuffer buffer, int position, int end) {
+		for (; position <= end - Long.BYTES; position += Long.BYTES) {
+			hash ^= round(0, buffer.getLong(position));
+			hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+		}
+		if (position <= end - Integer.BYTES) {
+			hash ^= (buffer.getInt(position) & 0xffffffffL) * PRIME1;
+			hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+			position += Integer.BYTES;
+		}
+		for (; position < end; position++) {
+			hash ^= (buffer.get(position) & 0xff) * PRIME5;
+			hash = Long.rotateLeft(hash, 11) * PRIME1;
+		}
+		hash ^= hash >>> 33;
+		hash *= PRIME2;
+		hash ^= hash >>> 29;
+		hash *= PRIME3;
+		return hash ^ (hash >>> 32);
+	}
+}
@@ -0,0 +1,41 @@
+package com.github.dwaite.bytestring.impl;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Feeds {@link ByteBuffer} content to a {@link Checksum}. On Java 8 only {@link CRC32} and {@link Adler32}
+ * accept buffers directly, so other implementations are fed through a scratch array. A replacement under
+ * `META-INF/versions/11` uses the `update(ByteBuffer)` method every checksum has on newer runtimes.
+ */
+public final class ChecksumSupport {
+	private static final int CHUNK_SIZE = 8192;
+
+	private ChecksumSupport() {
+	}
+
+	/**
+	 * Update the checksum with the remaining content of the buffer, advancing its position to its limit.
+	 * 
+	 * @param checksum checksum to update
+	 * @param buffer input data
+	 */
+	public static void update(Checksum checksum, ByteBuffer buffer) {
+		if (checksum instanceof CRC32) {
+			((CRC32) checksum).update(buffer);
+		}
+		else if (checksum instanceof Adler32) {
+			((Adler32) checksum).update(buffer);
+		}
+		else {
+			byte[] scratch = new byte[Math.min(CHUNK_SIZE, buffer.remaining())];
+			while (buffer.hasRemaining()) {
+				int count = Math.min(scratch.length, buffer.remaining());
+				buffer.get(scratch, 0, count);
+				checksum.update(scratch, 0, count);
+			}
+		}
+	}
+}
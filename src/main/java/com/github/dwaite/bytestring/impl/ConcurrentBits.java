@@ -0,0 +1,55 @@
+package com.github.dwaite.bytestring.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bit array over a writable {@link ByteBuffer} which may be updated by several threads at once. Bit `n` is
+ * bit `n % 8` of the byte at index `n / 8`, counting from the least significant bit, as per
+ * {@link java.util.BitSet#valueOf(ByteBuffer)}.
+ * 
+ * Java 8 offers no atomic operations over buffer or array content, so setting a bit takes one of a set of
+ * striped locks. A replacement under `META-INF/versions/9` sets bits lock-free through `VarHandle`s.
+ */
+public final class ConcurrentBits {
+	private static final int STRIPES = 64;
+
+	private final ByteBuffer buffer;
+	private final Object[] locks = new Object[STRIPES];
+
+	/**
+	 * @param buffer writable buffer holding the bits, indexed from zero
+	 */
+	public ConcurrentBits(ByteBuffer buffer) {
+		this.buffer = buffer;
+		for (int i = 0; i < STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	/**
+	 * @param bitIndex index of the bit
+	 * @return `true` if the bit is set
+	 */
+	public boolean get(long bitIndex) {
+		return (buffer.get((int) (bitIndex >>> 3)) & (1 << (bitIndex & 7))) != 0;
+	}
+
+	/**
+	 * Set a bit, atomically with respect to other calls to this method
+	 * 
+	 * @param bitIndex index of the bit
+	 * @return `true` if the bit was not previously set
+	 */
+	public boolean set(long bitIndex) {
+		int index = (int) (bitIndex >>> 3);
+		int mask = 1 << (bitIndex & 7);
+		synchronized (locks[index & (STRIPES - 1)]) {
+			byte current = buffer.get(index);
+			if ((current & mask) != 0) {
+				return false;
+			}
+			buffer.put(index, (byte) (current | mask));
+			return true;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.github.dwaite.bytestring.impl;
+
+/**
+ * Hooks for reporting large copies, mapped buffer operations and direct allocations to Java Flight
+ * Recorder. Each operation calls a `begin` method before starting, and passes the result to
+ * {@link #end(Object)} once complete.
+ *
+ * Flight Recorder events are only available from Java 11, so this Java 8 version does nothing. A
+ * replacement under `META-INF/versions/11` emits events with the size, duration and stack trace of each
+ * operation, reporting copies of at least the number of bytes given by the system property
+ * `com.github.dwaite.bytestring.jfr.copyThreshold`, which defaults to 1 MiB.
+ */
+public final class EventSupport {
+
+	private EventSupport() {
+	}
+
+	/**
+	 * @param operation name of the copying operation
+	 * @param bytes number of bytes to be copied
+	 * @return token to pass to {@link #end(Object)}, possibly `null`
+	 */
+	public static Object beginCopy(String operation, long bytes) {
+		return null;
+	}
+
+	/**
+	 * @param operation name of the mapped buffer operation
+	 * @param bytes size of the mapped buffer
+	 * @return token to pass to {@link #end(Object)}, possibly `null`
+	 */
+	public static Object beginMappedOperation(String operation, long bytes) {
+		return null;
+	}
+
+	/**
+	 * @param bytes capacity being allocated
+	 * @return token to pass to {@link #end(Object)}, possibly `null`
+	 */
+	public static Object beginDirectAllocation(long bytes) {
+		return null;
+	}
+
+	/**
+	 * @param token value returned by one of the `begin` methods
+	 */
+	public static void end(Object token) {
+	}
+}
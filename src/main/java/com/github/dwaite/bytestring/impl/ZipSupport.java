@@ -0,0 +1,99 @@
+package com.github.dwaite.bytestring.impl;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Access to the {@link ByteBuffer} overloads of {@link Deflater} and {@link Inflater}, which were added in
+ * Java 11. This Java 8 version goes through arrays: input is copied, and output is written directly to a
+ * heap buffer's array or through a scratch array otherwise. A replacement under `META-INF/versions/11`
+ * delegates to the real overloads.
+ */
+public final class ZipSupport {
+	private static final int CHUNK_SIZE = 8192;
+
+	private ZipSupport() {
+	}
+
+	/**
+	 * @return `true` if the remaining methods of this class pass buffers to the coder without copying, so
+	 *         callers need not prefer their own array-based path
+	 */
+	public static boolean hasByteBufferOverloads() {
+		return false;
+	}
+
+	/**
+	 * Set the remaining content of the buffer as input. The content is copied, and the position of the
+	 * buffer advanced to its limit.
+	 *
+	 * @param deflater deflater to set input on
+	 * @param input input data
+	 */
+	public static void setInput(Deflater deflater, ByteBuffer input) {
+		byte[] copy = remaining(input);
+		deflater.setInput(copy, 0, copy.length);
+	}
+
+	/**
+	 * Set the remaining content of the buffer as input. The content is copied, and the position of the
+	 * buffer advanced to its limit.
+	 *
+	 * @param inflater inflater to set input on
+	 * @param input input data
+	 */
+	public static void setInput(Inflater inflater, ByteBuffer input) {
+		byte[] copy = remaining(input);
+		inflater.setInput(copy, 0, copy.length);
+	}
+
+	/**
+	 * Deflate into the remaining space of the buffer, advancing its position by the bytes written.
+	 *
+	 * @param deflater deflater to produce output from
+	 * @param output buffer to write to
+	 * @param flush flush mode, as per {@link Deflater#deflate(byte[], int, int, int)}
+	 * @return number of bytes written
+	 */
+	public static int deflate(Deflater deflater, ByteBuffer output, int flush) {
+		if (output.hasArray()) {
+			int count = deflater.deflate(output.array(), output.arrayOffset() + output.position(),
+					output.remaining(), flush);
+			output.position(output.position() + count);
+			return count;
+		}
+		byte[] scratch = new byte[Math.min(CHUNK_SIZE, output.remaining())];
+		int count = deflater.deflate(scratch, 0, scratch.length, flush);
+		output.put(scratch, 0, count);
+		return count;
+	}
+
+	/**
+	 * Inflate into the remaining space of the buffer, advancing its position by the bytes written.
+	 *
+	 * @param inflater inflater to produce output from
+	 * @param output buffer to write to
+	 * @return number of bytes written
+	 * @throws DataFormatException if the compressed data is invalid
+	 */
+	public static int inflate(Inflater inflater, ByteBuffer output) throws DataFormatException {
+		if (output.hasArray()) {
+			int count = inflater.inflate(output.array(), output.arrayOffset() + output.position(),
+					output.remaining());
+			output.position(output.position() + count);
+			return count;
+		}
+		byte[] scratch = new byte[Math.min(CHUNK_SIZE, output.remaining())];
+		int count = inflater.inflate(scratch, 0, scratch.length);
+		output.put(scratch, 0, count);
+		return count;
+	}
+
+	private static byte[] remaining(ByteBuffer input) {
+		byte[] copy = new byte[input.remaining()];
+		input.get(copy);
+		return copy;
+	}
+}
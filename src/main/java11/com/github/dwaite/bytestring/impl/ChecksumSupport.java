@@ -0,0 +1,18 @@
+package com.github.dwaite.bytestring.impl;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * Java 11 version of the checksum hooks, using {@link Checksum#update(ByteBuffer)} so that every checksum
+ * implementation, including {@link java.util.zip.CRC32C}, reads direct buffers without a copy.
+ */
+public final class ChecksumSupport {
+
+	private ChecksumSupport() {
+	}
+
+	public static void update(Checksum checksum, ByteBuffer buffer) {
+		checksum.update(buffer);
+	}
+}
@@ -0,0 +1,20 @@
+package com.github.dwaite.bytestring.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.github.dwaite.bytestring.DirectAllocation")
+@Label("Direct Buffer Allocation")
+@Description("Allocation of a direct buffer")
+@Category("Byte Sequences")
+@StackTrace(true)
+class DirectAllocationEvent extends Event {
+	@Label("Capacity")
+	@DataAmount
+	long bytes;
+}
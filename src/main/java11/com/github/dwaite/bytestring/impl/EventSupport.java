@@ -0,0 +1,56 @@
+package com.github.dwaite.bytestring.impl;
+
+import jdk.jfr.Event;
+
+/**
+ * Java 11 version of the event hooks, emitting Flight Recorder events. Events are only created when
+ * recording is enabled for their type, and copies only when at least the threshold size.
+ */
+public final class EventSupport {
+	private static final long COPY_THRESHOLD = Long.getLong("com.github.dwaite.bytestring.jfr.copyThreshold",
+			1 << 20);
+
+	private EventSupport() {
+	}
+
+	public static Object beginCopy(String operation, long bytes) {
+		if (bytes < COPY_THRESHOLD) {
+			return null;
+		}
+		LargeCopyEvent event = new LargeCopyEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.operation = operation;
+		event.bytes = bytes;
+		event.begin();
+		return event;
+	}
+
+	public static Object beginMappedOperation(String operation, long bytes) {
+		MappedBufferEvent event = new MappedBufferEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.operation = operation;
+		event.bytes = bytes;
+		event.begin();
+		return event;
+	}
+
+	public static Object beginDirectAllocation(long bytes) {
+		DirectAllocationEvent event = new DirectAllocationEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.bytes = bytes;
+		event.begin();
+		return event;
+	}
+
+	public static void end(Object token) {
+		if (token != null) {
+			((Event) token).commit();
+		}
+	}
+}
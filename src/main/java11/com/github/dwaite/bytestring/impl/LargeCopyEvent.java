@@ -0,0 +1,23 @@
+package com.github.dwaite.bytestring.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.github.dwaite.bytestring.LargeCopy")
+@Label("Large Byte Copy")
+@Description("Copy of byte content at or above the configured threshold size")
+@Category("Byte Sequences")
+@StackTrace(true)
+class LargeCopyEvent extends Event {
+	@Label("Operation")
+	String operation;
+
+	@Label("Size")
+	@DataAmount
+	long bytes;
+}
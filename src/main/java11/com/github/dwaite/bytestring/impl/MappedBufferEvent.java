@@ -0,0 +1,23 @@
+package com.github.dwaite.bytestring.impl;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.github.dwaite.bytestring.MappedBuffer")
+@Label("Mapped Buffer Operation")
+@Description("Load or force of a memory-mapped buffer")
+@Category("Byte Sequences")
+@StackTrace(true)
+class MappedBufferEvent extends Event {
+	@Label("Operation")
+	String operation;
+
+	@Label("Size")
+	@DataAmount
+	long bytes;
+}
@@ -0,0 +1,36 @@
+package com.github.dwaite.bytestring.impl;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Java 11 version of the zip support hooks, delegating to the {@link ByteBuffer} overloads of
+ * {@link Deflater} and {@link Inflater} so direct and read-only buffers are consumed without a copy.
+ */
+public final class ZipSupport {
+
+	private ZipSupport() {
+	}
+
+	public static boolean hasByteBufferOverloads() {
+		return true;
+	}
+
+	public static void setInput(Deflater deflater, ByteBuffer input) {
+		deflater.setInput(input);
+	}
+
+	public static void setInput(Inflater inflater, ByteBuffer input) {
+		inflater.setInput(input);
+	}
+
+	public static int deflate(Deflater deflater, ByteBuffer output, int flush) {
+		return deflater.deflate(output, flush);
+	}
+
+	public static int inflate(Inflater inflater, ByteBuffer output) throws DataFormatException {
+		return inflater.inflate(output);
+	}
+}
@@ -0,0 +1,351 @@
+package com.github.dwaite.bytestring;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.dwaite.bytestring.impl.EventSupport;
+
+/**
+ * {@link Flow.Publisher} of the content of a channel or file, as a series of chunks read on demand.
+ *
+ * Chunks are read-only {@link BytesBuffer} views, not copies. A file may be published as read-only mappings
+ * of successive regions, which remain valid indefinitely. Any other channel is read into a pool of buffers
+ * used in turn, so a chunk remains valid only until `poolSize - 1` further chunks have been delivered.
+ * Subscribers which hold on to chunks for longer should take a copy with {@link ByteSequence#toBytes()}.
+ * {@link ChannelSubscriber} writes out each batch before requesting the next, so is safe with a batch size
+ * no larger than the pool size.
+ *
+ * Nothing is read until the subscriber requests chunks, and no more chunks are read than have been
+ * requested. Reads block, so channels must be in blocking mode; they are run on the given executor, by
+ * default {@link ForkJoinPool#commonPool()}. The channel is closed on completion, error or cancellation.
+ *
+ * As the content can only be read once, a publisher accepts a single subscriber.
+ *
+ * Only available on Java 9 and later.
+ */
+public final class ChannelPublisher implements Flow.Publisher<ByteSequence> {
+	/**
+	 * Default size of a pooled buffer, in bytes
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+	/**
+	 * Default number of pooled buffers
+	 */
+	public static final int DEFAULT_POOL_SIZE = 8;
+	/**
+	 * Default size of a mapped file region, in bytes
+	 */
+	public static final int DEFAULT_MAPPED_CHUNK_SIZE = 1 << 22;
+
+	private final ChunkSource source;
+	private final Executor executor;
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+
+	private ChannelPublisher(ChunkSource source, Executor executor) {
+		this.source = source;
+		this.executor = Objects.requireNonNull(executor);
+	}
+
+	/**
+	 * Publish the content of a channel, read into the default number of pooled buffers of the default size
+	 *
+	 * @param channel blocking channel to read
+	 * @return new publisher
+	 */
+	public static ChannelPublisher ofChannel(ReadableByteChannel channel) {
+		return ofChannel(channel, DEFAULT_CHUNK_SIZE, DEFAULT_POOL_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Publish the content of a channel, read into pooled direct buffers
+	 *
+	 * @param channel blocking channel to read
+	 * @param chunkSize size of each pooled buffer, and so the maximum length of a chunk
+	 * @param poolSize number of pooled buffers
+	 * @param executor executor to read on
+	 * @return new publisher
+	 * @throws IllegalArgumentException if the chunk or pool size is not positive
+	 */
+	public static ChannelPublisher ofChannel(ReadableByteChannel channel, int chunkSize, int poolSize,
+			Executor executor) {
+		Objects.requireNonNull(channel);
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize");
+		}
+		if (poolSize <= 0) {
+			throw new IllegalArgumentException("poolSize");
+		}
+		return new ChannelPublisher(new PooledSource(channel, chunkSize, poolSize), executor);
+	}
+
+	/**
+	 * Publish the content of a file as mapped regions of the default size
+	 *
+	 * @param path file to read, opened once subscribed
+	 * @return new publisher
+	 */
+	public static ChannelPublisher mapFile(Path path) {
+		return mapFile(path, DEFAULT_MAPPED_CHUNK_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Publish the content of a file as mapped regions
+	 *
+	 * @param path file to read, opened once subscribed
+	 * @param chunkSize size of each mapped region, and so the maximum length of a chunk
+	 * @param executor executor to map regions on
+	 * @return new publisher
+	 * @throws IllegalArgumentException if the chunk size is not positive
+	 */
+	public static ChannelPublisher mapFile(Path path, int chunkSize, Executor executor) {
+		Objects.requireNonNull(path);
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("chunkSize");
+		}
+		return new ChannelPublisher(new MappedSource(path, chunkSize), executor);
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super ByteSequence> subscriber) {
+		Objects.requireNonNull(subscriber);
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("publisher already subscribed"));
+			return;
+		}
+		subscriber.onSubscribe(new ChunkSubscription(subscriber));
+	}
+
+	private interface ChunkSource {
+		// next chunk, or null at the end of the content
+		ByteSequence next() throws IOException;
+
+		void close() throws IOException;
+	}
+
+	private static final class PooledSource implements ChunkSource {
+		private final ReadableByteChannel channel;
+		private final int chunkSize;
+		private final ByteBuffer[] pool;
+		private int index;
+
+		PooledSource(ReadableByteChannel channel, int chunkSize, int poolSize) {
+			this.channel = channel;
+			this.chunkSize = chunkSize;
+			this.pool = new ByteBuffer[poolSize];
+		}
+
+		@Override
+		public ByteSequence next() throws IOException {
+			ByteBuffer buffer = pool[index];
+			if (buffer == null) {
+				// allocated as first needed, so a short stream does not take the whole pool
+				buffer = ByteSequences.writableBufferOf(BytesBuffer.allocateDirect(chunkSize));
+				pool[index] = buffer;
+			}
+			index = (index + 1) % pool.length;
+			buffer.clear();
+			int read;
+			do {
+				read = channel.read(buffer);
+			}
+			while (read == 0);
+			if (read < 0) {
+				return null;
+			}
+			buffer.flip();
+			return BytesBuffer.wrap(buffer.slice().asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN));
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	private static final class MappedSource implements ChunkSource {
+		private final Path path;
+		private final int chunkSize;
+		private FileChannel channel;
+		private long position;
+		private long size;
+
+		MappedSource(Path path, int chunkSize) {
+			this.path = path;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		public ByteSequence next() throws IOException {
+			if (channel == null) {
+				channel = FileChannel.open(path, StandardOpenOption.READ);
+				size = channel.size();
+			}
+			if (position >= size) {
+				return null;
+			}
+			long length = Math.min(chunkSize, size - position);
+			Object event = EventSupport.beginMappedOperation("map", length);
+			MappedByteBuffer region;
+			try {
+				region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			}
+			finally {
+				EventSupport.end(event);
+			}
+			position += length;
+			return BytesBuffer.wrap(region);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (channel != null) {
+				channel.close();
+			}
+		}
+	}
+
+	// reads and delivers chunks on the executor, with at most one drain running at a time
+	private final class ChunkSubscription implements Flow.Subscription, Runnable {
+		private final Flow.Subscriber<? super ByteSequence> subscriber;
+		private final AtomicLong demand = new AtomicLong();
+		private final AtomicInteger pendingDrains = new AtomicInteger();
+		private volatile boolean cancelled;
+		private volatile Throwable invalidRequest;
+		// only accessed by the draining thread
+		private boolean done;
+
+		ChunkSubscription(Flow.Subscriber<? super ByteSequence> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				invalidRequest = new IllegalArgumentException("request must be positive");
+			}
+			else {
+				demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		private void schedule() {
+			if (pendingDrains.getAndIncrement() == 0) {
+				try {
+					executor.execute(this);
+				}
+				catch (RejectedExecutionException e) {
+					// no drain can start while the count is non-zero, so this thread may finish the stream
+					fail(e);
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				drain();
+				missed = pendingDrains.addAndGet(-missed);
+			}
+			while (missed != 0);
+		}
+
+		private void drain() {
+			while (!done) {
+				if (cancelled) {
+					done = true;
+					closeSource();
+					return;
+				}
+				if (invalidRequest != null) {
+					fail(invalidRequest);
+					return;
+				}
+				long requested = demand.get();
+				if (requested == 0) {
+					return;
+				}
+				ByteSequence chunk;
+				try {
+					chunk = source.next();
+				}
+				catch (IOException | RuntimeException e) {
+					fail(e);
+					return;
+				}
+				if (chunk == null) {
+					done = true;
+					try {
+						source.close();
+					}
+					catch (IOException e) {
+						subscriber.onError(e);
+						return;
+					}
+					subscriber.onComplete();
+					return;
+				}
+				if (requested != Long.MAX_VALUE) {
+					demand.decrementAndGet();
+				}
+				try {
+					subscriber.onNext(chunk);
+				}
+				catch (RuntimeException e) {
+					// a subscriber which throws is treated as having cancelled
+					done = true;
+					closeSource();
+					throw e;
+				}
+			}
+		}
+
+		private void fail(Throwable failure) {
+			if (done) {
+				return;
+			}
+			done = true;
+			closeSource();
+			subscriber.onError(failure);
+		}
+
+		private void closeSource() {
+			try {
+				source.close();
+			}
+			catch (IOException e) {
+				// the stream is already finishing with another outcome
+			}
+		}
+	}
+}
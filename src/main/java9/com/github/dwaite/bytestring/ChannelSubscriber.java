@@ -0,0 +1,129 @@
+package com.github.dwaite.bytestring;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/**
+ * {@link Flow.Subscriber} which writes the sequences it receives to a channel.
+ *
+ * Sequences are requested in batches. Once a batch has arrived, or the publisher completes, the batch is
+ * written in place with gathering writes before more sequences are requested. Views which are only valid
+ * for a limited time, such as the pooled chunks of a {@link ChannelPublisher}, are therefore safe to write
+ * as long as the batch size is no larger than the pool size.
+ *
+ * The channel is not closed. The outcome is reported through {@link #result()}.
+ *
+ * Only available on Java 9 and later.
+ */
+public final class ChannelSubscriber implements Flow.Subscriber<ByteSequence> {
+	/**
+	 * Default number of sequences requested and written at a time
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 8;
+
+	private final GatheringByteChannel channel;
+	private final ByteBuffer[] batch;
+	private final CompletableFuture<Long> result = new CompletableFuture<>();
+	private Flow.Subscription subscription;
+	private int count;
+	private long written;
+
+	/**
+	 * Create a subscriber writing batches of the default size
+	 *
+	 * @param channel channel to write to
+	 */
+	public ChannelSubscriber(GatheringByteChannel channel) {
+		this(channel, DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * Create a subscriber
+	 *
+	 * @param channel channel to write to
+	 * @param batchSize number of sequences requested and written at a time
+	 * @throws IllegalArgumentException if the batch size is not positive
+	 */
+	public ChannelSubscriber(GatheringByteChannel channel, int batchSize) {
+		this.channel = Objects.requireNonNull(channel);
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("batchSize");
+		}
+		this.batch = new ByteBuffer[batchSize];
+	}
+
+	/**
+	 * @return future completed with the number of bytes written once the publisher completes and all
+	 *         sequences are written, or exceptionally with the error from the publisher or from writing, in
+	 *         which case the subscription is cancelled
+	 */
+	public CompletableFuture<Long> result() {
+		return result;
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		Objects.requireNonNull(subscription);
+		if (this.subscription != null) {
+			subscription.cancel();
+			return;
+		}
+		this.subscription = subscription;
+		subscription.request(batch.length);
+	}
+
+	@Override
+	public void onNext(ByteSequence item) {
+		Objects.requireNonNull(item);
+		if (result.isDone()) {
+			return;
+		}
+		batch[count++] = ByteSequences.readableBufferOf(item);
+		if (count == batch.length && flush()) {
+			subscription.request(batch.length);
+		}
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		Objects.requireNonNull(throwable);
+		Arrays.fill(batch, 0, count, null);
+		count = 0;
+		result.completeExceptionally(throwable);
+	}
+
+	@Override
+	public void onComplete() {
+		if (!result.isDone() && flush()) {
+			result.complete(written);
+		}
+	}
+
+	// write out the batch, returning false if writing failed
+	private boolean flush() {
+		try {
+			int first = 0;
+			while (first < count) {
+				written += channel.write(batch, first, count - first);
+				while (first < count && !batch[first].hasRemaining()) {
+					first++;
+				}
+			}
+			return true;
+		}
+		catch (IOException | RuntimeException e) {
+			subscription.cancel();
+			result.completeExceptionally(e);
+			return false;
+		}
+		finally {
+			Arrays.fill(batch, 0, count, null);
+			count = 0;
+		}
+	}
+}
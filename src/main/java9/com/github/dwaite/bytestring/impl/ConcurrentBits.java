@@ -0,0 +1,75 @@
+package com.github.dwaite.bytestring.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Java 9 version of the concurrent bit array, setting bits lock-free with an atomic or. Heap buffers are
+ * updated a byte at a time through their array, and direct buffers eight bytes at a time, as little-endian
+ * words so that the bit numbering is unchanged. A direct buffer which is not aligned to eight bytes falls
+ * back to striped locks.
+ */
+public final class ConcurrentBits {
+	private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+	private static final VarHandle WORDS = MethodHandles.byteBufferViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+	private static final int STRIPES = 64;
+
+	private final ByteBuffer buffer;
+	private final byte[] array;
+	private final int arrayOffset;
+	private final boolean words;
+	private final Object[] locks;
+
+	public ConcurrentBits(ByteBuffer buffer) {
+		this.buffer = buffer;
+		if (buffer.hasArray()) {
+			array = buffer.array();
+			arrayOffset = buffer.arrayOffset();
+			words = false;
+			locks = null;
+			return;
+		}
+		array = null;
+		arrayOffset = 0;
+		words = buffer.isDirect() && buffer.limit() % Long.BYTES == 0 && buffer.alignmentOffset(0, Long.BYTES) == 0;
+		if (words) {
+			locks = null;
+		}
+		else {
+			locks = new Object[STRIPES];
+			for (int i = 0; i < STRIPES; i++) {
+				locks[i] = new Object();
+			}
+		}
+	}
+
+	public boolean get(long bitIndex) {
+		return (buffer.get((int) (bitIndex >>> 3)) & (1 << (bitIndex & 7))) != 0;
+	}
+
+	public boolean set(long bitIndex) {
+		if (array != null) {
+			byte mask = (byte) (1 << (bitIndex & 7));
+			byte previous = (byte) BYTES.getAndBitwiseOr(array, arrayOffset + (int) (bitIndex >>> 3), mask);
+			return (previous & mask) == 0;
+		}
+		if (words) {
+			long mask = 1L << bitIndex;
+			long previous = (long) WORDS.getAndBitwiseOr(buffer, (int) (bitIndex >>> 6) << 3, mask);
+			return (previous & mask) == 0;
+		}
+		int index = (int) (bitIndex >>> 3);
+		int mask = 1 << (bitIndex & 7);
+		synchronized (locks[index & (STRIPES - 1)]) {
+			byte current = buffer.get(index);
+			if ((current & mask) != 0) {
+				return false;
+			}
+			buffer.put(index, (byte) (current | mask));
+			return true;
+		}
+	}
+}
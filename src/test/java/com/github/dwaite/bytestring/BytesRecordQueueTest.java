@@ -0,0 +1,262 @@
+package com.github.dwaite.bytestring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class BytesRecordQueueTest {
+
+	@Test
+	public void drainsRecordsInClaimOrder() {
+		BytesRecordQueue queue = BytesRecordQueue.allocateDirect(256);
+		assertTrue(queue.offer(Bytes.ofUTF8("first")));
+		assertTrue(queue.offer(Bytes.empty()));
+		assertTrue(queue.offer(Bytes.ofUTF8("third record")));
+
+		List<Bytes> drained = drainAll(queue);
+		assertEquals(3, drained.size());
+		assertEquals(Bytes.ofUTF8("first"), drained.get(0));
+		assertEquals(0, drained.get(1).length());
+		assertEquals(Bytes.ofUTF8("third record"), drained.get(2));
+		assertEquals(0, queue.size());
+	}
+
+	@Test
+	public void drainRespectsMaxRecords() {
+		BytesRecordQueue queue = BytesRecordQueue.allocateDirect(256);
+		for (int i = 0; i < 5; i++) {
+			assertTrue(queue.offer(record(i)));
+		}
+		List<Bytes> drained = new ArrayList<>();
+		assertEquals(2, queue.drain(record -> drained.add(record.toBytes()), 2));
+		assertEquals(3, queue.drain(record -> drained.add(record.toBytes())));
+		for (int i = 0; i < 5; i++) {
+			assertEquals(record(i), drained.get(i));
+		}
+	}
+
+	@Test
+	public void padsRecordThatWouldStraddleTheEnd() {
+		// 20 byte payloads take 24 bytes with the header, so the third record does not fit in the last 16
+		BytesRecordQueue queue = BytesRecordQueue.allocateDirect(64);
+		assertTrue(queue.offer(filled(20, 1)));
+		assertTrue(queue.offer(filled(20, 2)));
+		assertEquals(2, drainAll(queue).size());
+
+		assertTrue(queue.offer(filled(20, 3)));
+		// the 16 bytes of padding at the end are claimed along with the record at the start
+		assertEquals(16 + 24, queue.size());
+		List<Bytes> drained = drainAll(queue);
+		assertEquals(1, drained.size());
+		assertEquals(filled(20, 3), drained.get(0));
+		assertEquals(0, queue.size());
+
+		// the space of both the padding and the record is reusable afterward
+		assertTrue(queue.offer(filled(20, 4)));
+		assertTrue(queue.offer(filled(20, 5)));
+		drained = drainAll(queue);
+		assertEquals(2, drained.size());
+		assertEquals(filled(20, 4), drained.get(0));
+		assertEquals(filled(20, 5), drained.get(1));
+	}
+
+	@Test
+	public void padsRepeatedlyAcrossManyWraps() {
+		BytesRecordQueue queue = BytesRecordQueue.allocateDirect(128);
+		for (int i = 0; i < 1000; i++) {
+			Bytes record = filled(i % 41, i);
+			assertTrue(queue.offer(record));
+			List<Bytes> drained = drainAll(queue);
+			assertEquals(1, drained.size());
+			assertEquals(record, drained.get(0));
+		}
+	}
+
+	@Test
+	public void consumerStopsAtFirstUncommittedRecord() {
+		BytesRecordQueue queue = BytesRecordQueue.allocateDirect(256);
+		BytesRecordQueue.Claim first = queue.tryClaim(1);
+		BytesRecordQueue.Claim second = queue.tryClaim(1);
+		BytesRecordQueue.Claim third = queue.tryClaim(1);
+		first.payload().put(0, (byte) 1);
+		second.payload().put(0, (byte) 2);
+		third.payload().put(0, (byte) 3);
+
+		second.commit();
+		third.commit();
+		assertEquals(0, queue.drain(record -> {
+			throw new AssertionError("record passed before the first was committed");
+		}));
+
+		first.commit();
+		List<Bytes> drained = drainAll(queue);
+		assertEquals(3, drained.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals(i + 1, drained.get(i).get(0));
+		}
+	}
+
+	@Test
+	public void drainsCommittedPrefixOnly() {
+		BytesRecordQueue queue = BytesRecordQueue.allocateDirect(256);
+		BytesRecordQueue.Claim first = queue.tryClaim(1);
+		BytesRecordQueue.Claim second = queue.tryClaim(1);
+		first.commit();
+		assertEquals(1, queue.drain(record -> {
+		}));
+		second.commit();
+		assertEquals(1, queue.drain(record -> {
+		}));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsDoubleCommit() {
+		BytesRecordQueue.Claim claim = BytesRecordQueue.allocateDirect(64).tryClaim(1);
+		claim.commit();
+		claim.commit();
+	}
+
+	@Test
+	public void refusesClaimsWhenFull() {
+		BytesRecordQueue queue = BytesRecordQueue.allocateDirect(64);
+		// 12 byte payloads take 16 bytes each, so exactly four fit
+		for (int i = 0; i < 4; i++) {
+			assertTrue(queue.offer(filled(12, i)));
+		}
+		assertEquals(64, queue.size());
+		assertFalse(queue.offer(Bytes.empty()));
+		assertNull(queue.tryClaim(0));
+
+		assertEquals(1, queue.drain(record -> {
+		}, 1));
+		assertNotNull(queue.tryClaim(12));
+		assertNull(queue.tryClaim(0));
+	}
+
+	@Test
+	public void emptyQueueDrainsNothing() {
+		BytesRecordQueue queue = BytesRecordQueue.allocateDirect(64);
+		assertEquals(0, queue.size());
+		assertEquals(0, queue.drain(record -> {
+			throw new AssertionError();
+		}));
+	}
+
+	@Test
+	public void acceptsRecordOfMaximumLength() {
+		BytesRecordQueue queue = BytesRecordQueue.allocateDirect(64);
+		assertEquals(28, queue.maxRecordLength());
+		Bytes record = filled(28, 7);
+		assertTrue(queue.offer(record));
+		assertEquals(record, drainAll(queue).get(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsRecordLongerThanMaximum() {
+		BytesRecordQueue.allocateDirect(64).tryClaim(29);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsCapacityWhichIsNotAPowerOfTwo() {
+		new BytesRecordQueue(BytesBuffer.allocate(96));
+	}
+
+	@Test(timeout = 60000)
+	public void preservesOrderPerProducer() throws Exception {
+		final int producers = 3;
+		final int recordsPerProducer = 5000;
+		BytesRecordQueue queue = BytesRecordQueue.allocateDirect(1024);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		List<Thread> threads = new ArrayList<>();
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			Thread thread = new Thread(() -> {
+				try {
+					for (int i = 0; i < recordsPerProducer; i++) {
+						// vary the length so that records wrap at different points
+						BytesRecordQueue.Claim claim;
+						while ((claim = queue.tryClaim(8 + i % 13)) == null) {
+							Thread.yield();
+						}
+						writeInt(claim.payload(), 0, producer);
+						writeInt(claim.payload(), 4, i);
+						claim.commit();
+					}
+				}
+				catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+
+		int[] next = new int[producers];
+		int total = 0;
+		while (total < producers * recordsPerProducer && failure.get() == null) {
+			int drained = queue.drain(record -> {
+				int producer = readInt(record, 0);
+				int sequence = readInt(record, 4);
+				assertEquals(8 + sequence % 13, record.length());
+				assertEquals("record out of order for producer " + producer, next[producer], sequence);
+				next[producer]++;
+			});
+			if (drained == 0) {
+				Thread.yield();
+			}
+			total += drained;
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+		for (int p = 0; p < producers; p++) {
+			assertEquals(recordsPerProducer, next[p]);
+		}
+		assertEquals(0, queue.size());
+	}
+
+	private static List<Bytes> drainAll(BytesRecordQueue queue) {
+		List<Bytes> drained = new ArrayList<>();
+		queue.drain(record -> drained.add(record.toBytes()));
+		return drained;
+	}
+
+	private static Bytes record(int value) {
+		ByteArray bytes = new ByteArray(new byte[Integer.BYTES]);
+		writeInt(bytes, 0, value);
+		return bytes.toBytes();
+	}
+
+	private static void writeInt(MutableByteSequence sequence, int index, int value) {
+		for (int i = 0; i < Integer.BYTES; i++) {
+			sequence.put(index + i, (byte) (value >>> (24 - 8 * i)));
+		}
+	}
+
+	private static int readInt(ByteSequence sequence, int index) {
+		int value = 0;
+		for (int i = 0; i < Integer.BYTES; i++) {
+			value = value << 8 | sequence.get(index + i) & 0xff;
+		}
+		return value;
+	}
+
+	private static Bytes filled(int length, int seed) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) (seed * 31 + i);
+		}
+		return bytes.length == 0 ? Bytes.empty() : new Bytes(bytes);
+	}
+}
@@ -0,0 +1,187 @@
+package com.github.dwaite.bytestring;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class BytesRingBufferTest {
+
+	@Test
+	public void offerAndPollInOrder() {
+		BytesRingBuffer ring = BytesRingBuffer.allocate(16, BytesRingBuffer.WaitStrategy.yielding());
+		assertTrue(ring.isEmpty());
+		assertEquals(5, ring.offer(pattern(0, 5)));
+		assertEquals(5, ring.size());
+
+		ByteArray destination = new ByteArray(new byte[8]);
+		assertEquals(5, ring.poll(destination, 2, 6));
+		assertEquals(pattern(0, 5), destination.subSequence(2, 7).toBytes());
+		assertTrue(ring.isEmpty());
+	}
+
+	@Test
+	public void offerAcceptsOnlyFreeSpace() {
+		BytesRingBuffer ring = BytesRingBuffer.allocate(16, BytesRingBuffer.WaitStrategy.yielding());
+		assertEquals(16, ring.offer(pattern(0, 20)));
+		assertEquals(16, ring.size());
+		assertEquals(0, ring.offer(pattern(0, 1)));
+
+		ByteArray destination = new ByteArray(new byte[4]);
+		assertEquals(4, ring.poll(destination, 0, 4));
+		assertEquals(4, ring.offer(pattern(16, 4), 0, 4));
+		assertEquals(16, ring.size());
+	}
+
+	@Test
+	public void pollReturnsNothingWhenEmpty() {
+		BytesRingBuffer ring = BytesRingBuffer.allocate(16, BytesRingBuffer.WaitStrategy.yielding());
+		assertEquals(0, ring.poll(new ByteArray(new byte[4]), 0, 4));
+		assertEquals(0, ring.drain(view -> {
+			throw new AssertionError();
+		}));
+	}
+
+	@Test
+	public void offerAndPollWrapAroundTheEnd() {
+		BytesRingBuffer ring = BytesRingBuffer.allocate(16, BytesRingBuffer.WaitStrategy.yielding());
+		ByteArray destination = new ByteArray(new byte[16]);
+		assertEquals(10, ring.offer(pattern(0, 10)));
+		assertEquals(10, ring.poll(destination, 0, 16));
+
+		// written as 6 bytes at the end of the ring and 6 at the start
+		assertEquals(12, ring.offer(pattern(10, 12)));
+		assertEquals(12, ring.size());
+		assertEquals(12, ring.poll(destination, 0, 16));
+		assertEquals(pattern(10, 12), destination.subSequence(0, 12).toBytes());
+	}
+
+	@Test
+	public void pollWrapsIntoDirectBufferDestination() {
+		BytesRingBuffer ring = BytesRingBuffer.allocateDirect(16, BytesRingBuffer.WaitStrategy.yielding());
+		BytesBuffer destination = BytesBuffer.allocateDirect(16);
+		ring.offer(pattern(0, 12));
+		ring.poll(destination, 0, 12);
+		assertEquals(10, ring.offer(pattern(12, 10)));
+		assertEquals(10, ring.poll(destination, 3, 10));
+		for (int i = 0; i < 10; i++) {
+			assertEquals((byte) (12 + i), destination.get(3 + i));
+		}
+	}
+
+	@Test
+	public void drainPassesTwoViewsWhenWrapped() {
+		BytesRingBuffer ring = BytesRingBuffer.allocate(16, BytesRingBuffer.WaitStrategy.yielding());
+		ring.offer(pattern(0, 12));
+		assertEquals(12, ring.drain(view -> {
+		}));
+
+		ring.offer(pattern(12, 10));
+		List<Bytes> views = new ArrayList<>();
+		assertEquals(10, ring.drain(view -> views.add(view.toBytes())));
+		assertEquals(2, views.size());
+		assertEquals(pattern(12, 4), views.get(0));
+		assertEquals(pattern(16, 6), views.get(1));
+		assertTrue(ring.isEmpty());
+	}
+
+	@Test
+	public void drainPassesOneViewWhenContiguous() {
+		BytesRingBuffer ring = BytesRingBuffer.allocate(16, BytesRingBuffer.WaitStrategy.yielding());
+		ring.offer(pattern(0, 16));
+		List<Bytes> views = new ArrayList<>();
+		assertEquals(16, ring.drain(view -> views.add(view.toBytes())));
+		assertEquals(1, views.size());
+		assertEquals(pattern(0, 16), views.get(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsCapacityWhichIsNotAPowerOfTwo() {
+		BytesRingBuffer.allocate(24, BytesRingBuffer.WaitStrategy.yielding());
+	}
+
+	@Test(timeout = 60000)
+	public void transfersStreamBetweenThreads() throws Exception {
+		for (BytesRingBuffer.WaitStrategy strategy : new BytesRingBuffer.WaitStrategy[] {
+				BytesRingBuffer.WaitStrategy.yielding(), BytesRingBuffer.WaitStrategy.parking(),
+				BytesRingBuffer.WaitStrategy.blocking() }) {
+			transferStream(strategy);
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void sizeIsNeverNegativeFromAnotherThread() throws Exception {
+		BytesRingBuffer ring = BytesRingBuffer.allocate(64, BytesRingBuffer.WaitStrategy.yielding());
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread observer = new Thread(() -> {
+			while (!done.get()) {
+				int size = ring.size();
+				if (size < 0 || size > ring.capacity()) {
+					failure.compareAndSet(null, new AssertionError("size " + size));
+				}
+				Thread.yield();
+			}
+		});
+		observer.start();
+		ByteArray destination = new ByteArray(new byte[64]);
+		for (int i = 0; i < 20000; i++) {
+			ring.offer(pattern(i, 1 + i % 50));
+			ring.poll(destination, 0, 64);
+		}
+		done.set(true);
+		observer.join();
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+	}
+
+	private static void transferStream(BytesRingBuffer.WaitStrategy strategy) throws Exception {
+		final int total = 100000;
+		BytesRingBuffer ring = BytesRingBuffer.allocateDirect(256, strategy);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		Thread producer = new Thread(() -> {
+			try {
+				for (int sent = 0; sent < total; ) {
+					int length = Math.min(total - sent, 1 + sent % 97);
+					ring.put(pattern(sent, length));
+					sent += length;
+				}
+			}
+			catch (Throwable e) {
+				failure.compareAndSet(null, e);
+			}
+		});
+		producer.start();
+
+		ByteArray destination = new ByteArray(new byte[100]);
+		int received = 0;
+		while (received < total && failure.get() == null) {
+			int count = ring.take(destination, 0, destination.length());
+			for (int i = 0; i < count; i++) {
+				assertEquals((byte) (received + i), destination.get(i));
+			}
+			received += count;
+		}
+		producer.join();
+		if (failure.get() != null) {
+			throw new AssertionError(failure.get());
+		}
+		assertEquals(total, received);
+		assertEquals(0, ring.size());
+	}
+
+	// bytes counting up from the given start, so that position in a stream is checkable
+	private static Bytes pattern(int start, int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) (start + i);
+		}
+		return new Bytes(bytes);
+	}
+}